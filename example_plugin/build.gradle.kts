@@ -9,6 +9,7 @@ e2e {
     minecraftVersion.set("1.19.4")
     acceptEula.set(true)
     testsDir.set(file("src/test/e2e"))
+    botPoolSize.set(1)
     downloadPlugins {
         url("https://hangarcdn.papermc.io/plugins/HelpChat/PlaceholderAPI/versions/2.11.6/PAPER/PlaceholderAPI-2.11.6.jar")
     }
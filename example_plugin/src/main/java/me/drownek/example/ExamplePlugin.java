@@ -2,6 +2,9 @@ package me.drownek.example;
 
 import dev.rollczi.litecommands.LiteCommands;
 import me.drownek.example.config.Messages;
+import me.drownek.example.data.UserCache;
+import me.drownek.example.data.UserNameIndex;
+import me.drownek.example.data.UserSavePipeline;
 import me.drownek.platform.bukkit.LightBukkitPlugin;
 import me.drownek.platform.core.annotation.Scan;
 import me.drownek.platform.core.plan.Planned;
@@ -16,8 +19,14 @@ public class ExamplePlugin extends LightBukkitPlugin {
     @Planned(POST_STARTUP)
     void postStartup(
         Messages messages,
-        LiteCommands<CommandSender> commands
+        LiteCommands<CommandSender> commands,
+        UserSavePipeline savePipeline,
+        UserCache userCache,
+        UserNameIndex nameIndex
     ) {
+        savePipeline.start();
+        userCache.start();
+        nameIndex.buildAsync();
         // Applying customized LiteCommands messages from built-in config that have to be added somewhere to use it
         messages.liteCommandsConfig.apply(commands);
         log("Plugin loaded successfully!");
@@ -26,7 +35,10 @@ public class ExamplePlugin extends LightBukkitPlugin {
     }
 
     @Planned(SHUTDOWN)
-    void shutdown() {
+    void shutdown(UserCache userCache, UserSavePipeline savePipeline) {
+        // Write pending user changes before the persistence is closed
+        userCache.stop();
+        savePipeline.stop();
         log("Plugin unloaded successfully!");
     }
 }
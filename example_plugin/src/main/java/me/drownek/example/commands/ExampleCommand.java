@@ -18,6 +18,9 @@ import me.drownek.example.config.PluginConfig;
 import me.drownek.example.config.polymorphic.computer.Laptop;
 import me.drownek.example.config.polymorphic.computer.Server;
 import me.drownek.example.data.User;
+import me.drownek.example.data.UserCache;
+import me.drownek.example.data.UserSavePipeline;
+import me.drownek.example.service.BulkBalanceService;
 import me.drownek.example.service.ExampleService;
 import me.drownek.util.WaitingTask;
 import me.drownek.util.gui.AmountSelectionGui;
@@ -29,9 +32,12 @@ import org.bukkit.inventory.ItemStack;
 import org.bukkit.plugin.Plugin;
 
 import java.math.BigDecimal;
+import java.math.RoundingMode;
 import java.time.Duration;
 import java.util.Arrays;
 import java.util.Map;
+import java.util.OptionalLong;
+import java.util.function.UnaryOperator;
 import java.util.logging.Level;
 import java.util.stream.Collectors;
 
@@ -40,10 +46,13 @@ import java.util.stream.Collectors;
 public class ExampleCommand {
 
     private @Inject ExampleService exampleService;
+    private @Inject BulkBalanceService bulkBalanceService;
     private @Inject OkaeriInjector injector;
     private @Inject Messages messages;
     private @Inject Plugin plugin;
     private @Inject PluginConfig config;
+    private @Inject UserCache userCache;
+    private @Inject UserSavePipeline savePipeline;
 
     @Execute(name = "polymorphic computer")
     void polymorphicComputer(@Context CommandSender commandSender) {
@@ -61,8 +70,7 @@ public class ExampleCommand {
     @Async
     @Execute(name = "set-balance")
     void setBalance(@Context CommandSender player, @Arg User target, @Arg BigDecimal balance) {
-        target.setBalance(balance);
-        target.save();
+        userCache.update(target, user -> user.setBalance(balance));
         player.sendMessage("Balance set " + balance);
     }
 
@@ -72,6 +80,49 @@ public class ExampleCommand {
         sender.sendMessage("Balance: " + target.getBalance());
     }
 
+    @Async
+    @Execute(name = "bulk interest")
+    void bulkInterest(@Context CommandSender sender, @Arg BigDecimal percent) {
+        BigDecimal multiplier = BigDecimal.ONE.add(percent.movePointLeft(2));
+        bulkBalance(sender, "Interest payout", balance -> balance.multiply(multiplier).setScale(2, RoundingMode.HALF_EVEN));
+    }
+
+    @Async
+    @Execute(name = "bulk reset")
+    void bulkReset(@Context CommandSender sender) {
+        bulkBalance(sender, "Balance reset", balance -> BigDecimal.ZERO);
+    }
+
+    private void bulkBalance(CommandSender sender, String name, UnaryOperator<BigDecimal> operation) {
+        try {
+            OptionalLong processed = bulkBalanceService.apply(operation, count -> sender.sendMessage(count == 0
+                ? name + " started"
+                : name + ": " + count + " user(s) processed"));
+            if (!processed.isPresent()) {
+                sender.sendMessage("Another bulk operation is already running");
+                return;
+            }
+            sender.sendMessage(name + " finished, " + processed.getAsLong() + " user(s) updated");
+        } catch (Exception e) {
+            sender.sendMessage(name + " failed, check console errors!");
+            plugin.getLogger().log(Level.SEVERE, name + " failed", e);
+        }
+    }
+
+    @Execute(name = "storage-stats")
+    void storageStats(@Context CommandSender sender) {
+        sender.sendMessage(String.format(
+            "Storage queue: %d batch(es), %d user(s) pending, %d written in %d batch(es), %d failed, latency avg %.1fms max %.1fms",
+            savePipeline.getQueueDepth(),
+            savePipeline.getPendingUsers(),
+            savePipeline.getWrittenUsers(),
+            savePipeline.getWrittenBatches(),
+            savePipeline.getFailedUsers(),
+            savePipeline.getAverageLatencyMillis(),
+            savePipeline.getMaxLatencyMillis()
+        ));
+    }
+
     @Execute(name = "greeting")
     void execute(@Context CommandSender player) {
         exampleService.greet(player);
@@ -9,35 +9,28 @@ import dev.rollczi.litecommands.suggestion.SuggestionResult;
 import eu.okaeri.injector.annotation.Inject;
 import me.drownek.example.config.Messages;
 import me.drownek.example.data.User;
-import me.drownek.example.data.UserRepository;
+import me.drownek.example.data.UserCache;
+import me.drownek.example.data.UserNameIndex;
 import me.drownek.platform.bukkit.annotation.CommandArgument;
-import org.bukkit.Bukkit;
-import org.bukkit.OfflinePlayer;
 import org.bukkit.command.CommandSender;
 
-import java.util.Arrays;
-import java.util.Objects;
-
 @CommandArgument
 public class UserArgument extends ArgumentResolver<CommandSender, User> {
 
-    private @Inject UserRepository repository;
+    private @Inject UserCache userCache;
+    private @Inject UserNameIndex nameIndex;
     private @Inject Messages messages;
 
     @Override
     protected ParseResult<User> parse(Invocation<CommandSender> invocation, Argument<User> argument, String s) {
-        return Arrays.stream(Bukkit.getOfflinePlayers())
-                .filter(it -> Objects.equals(it.getName(), s))
-                .findAny()
-                .map(repository::getByPlayer)
+        return nameIndex.findUuid(s)
+                .map(userCache::get)
                 .map(ParseResult::success)
                 .orElseGet(() -> ParseResult.failure(messages.playerNotFound));
     }
 
     @Override
     public SuggestionResult suggest(Invocation<CommandSender> invocation, Argument<User> argument, SuggestionContext context) {
-        return Arrays.stream(Bukkit.getOfflinePlayers())
-            .map(OfflinePlayer::getName)
-            .collect(SuggestionResult.collector());
+        return SuggestionResult.of(nameIndex.suggest(context.getCurrent().lastLevel()));
     }
 }
@@ -34,18 +34,22 @@ public class PluginConfig extends OkaeriConfig {
 
     public List<InputProvider> computers = new ArrayList<>();
 
+    @Comment("Maximum amount of player names suggested when tab completing user arguments")
+    public int userSuggestionLimit = 50;
+
     @Comment("Storage settings")
     public StorageConfig storage = new StorageConfig();
 
     public static class StorageConfig extends OkaeriConfig {
 
-        @Comment("Type of the storage backend: FLAT, MYSQL, POSTGRES")
+        @Comment("Type of the storage backend: FLAT, LOG, MYSQL, POSTGRES")
         public StorageBackend backend = StorageBackend.FLAT;
 
         @Comment("Prefix for the storage: allows to have multiple instances using same database")
         public String prefix = "bukkit-example";
 
         @Comment("FLAT   : not applicable, plugin controlled")
+        @Comment("LOG    : not applicable, plugin controlled")
         @Comment("MYSQL  : jdbc:mysql://localhost:3306/db")
         @Comment("POSTGRES  : jdbc:postgresql://localhost:5432/db")
         public String uri = "";
@@ -53,5 +57,41 @@ public class PluginConfig extends OkaeriConfig {
         public String user = "";
 
         public String password = "";
+
+        @Comment("LOG: how often (in seconds) the storage log is checked for compaction")
+        public int logCompactionIntervalSeconds = 300;
+
+        @Comment("LOG: how often (in seconds) appended records are forced to disk, a crash can lose the ones written since")
+        public int logSyncIntervalSeconds = 1;
+
+        @Comment("MYSQL/POSTGRES: maximum amount of pooled connections")
+        public int poolSize = 10;
+
+        @Comment("MYSQL/POSTGRES: cache prepared statements on the driver side")
+        public boolean cachePreparedStatements = true;
+
+        @Comment("MYSQL/POSTGRES: how many prepared statements the driver keeps per connection (a count, not bytes), only used with cachePreparedStatements")
+        public int preparedStatementCacheSize = 250;
+
+        @Comment("Maximum amount of users written in a single batched statement")
+        public int batchSize = 500;
+
+        @Comment("Amount of threads writing changes to the storage")
+        public int writeThreads = 2;
+
+        @Comment("Maximum amount of batches waiting for a writer thread, when full the flushing thread writes itself")
+        public int writeQueueCapacity = 64;
+
+        @Comment("Write-behind cache of users, changes are written to the storage in batches")
+        public CacheConfig cache = new CacheConfig();
+    }
+
+    public static class CacheConfig extends OkaeriConfig {
+
+        @Comment("Maximum amount of users kept in memory")
+        public int maximumSize = 10000;
+
+        @Comment("How often (in seconds) changed users are written to the storage")
+        public int flushIntervalSeconds = 5;
     }
 }
@@ -2,6 +2,7 @@ package me.drownek.example.config;
 
 public enum StorageBackend {
     FLAT,
+    LOG,
     MYSQL,
     POSTGRES
 }
\ No newline at end of file
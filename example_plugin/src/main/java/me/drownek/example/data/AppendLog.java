@@ -0,0 +1,373 @@
+package me.drownek.example.data;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Single append-only file of key/value records with an in-memory offset index.
+ * <p>
+ * Record layout: {@code [int keyLength][key][int valueLength][value]}, a value length
+ * of {@code -1} marks a deletion. The latest record of a key wins, older ones are
+ * garbage until {@link #compact()} rewrites the file with live records only.
+ * <p>
+ * Reads go through a memory mapping of the file, records appended since it was mapped
+ * and records past the 2GB a single mapping can hold are read from the channel instead.
+ */
+class AppendLog implements AutoCloseable {
+
+    private static final int TOMBSTONE = -1;
+
+    // the mapping is extended once this much was appended past it
+    private static final long REMAP_BYTES = 4 * 1024 * 1024;
+    private static final long MAX_MAPPED_BYTES = Integer.MAX_VALUE;
+
+    private final Path file;
+    // replaced as a whole by compaction, so readers without the lock never see it half filled
+    private volatile Map<String, Entry> index = new ConcurrentHashMap<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private FileChannel channel;
+    // only replaced under the write lock, so no reader uses a mapping when it is released
+    private volatile MappedByteBuffer mapped;
+    private long size;
+    private long garbageBytes;
+
+    AppendLog(File file) {
+        this.file = file.toPath();
+        try {
+            Files.createDirectories(this.file.getParent());
+            this.open();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to open " + file, e);
+        }
+    }
+
+    int count() {
+        return this.index.size();
+    }
+
+    boolean exists(String key) {
+        return this.index.containsKey(key);
+    }
+
+    Set<String> keys() {
+        return this.index.keySet();
+    }
+
+    Optional<String> read(String key) {
+        this.lock.readLock().lock();
+        try {
+            Entry entry = this.index.get(key);
+            return entry == null ? Optional.empty() : Optional.of(this.readValue(entry));
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    Map<String, String> readAll() {
+        this.lock.readLock().lock();
+        try {
+            Map<String, String> result = new LinkedHashMap<>();
+            this.index.forEach((key, entry) -> result.put(key, this.readValue(entry)));
+            return result;
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    void write(String key, String value) {
+        this.append(key, value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    boolean delete(String key) {
+        if (!this.index.containsKey(key)) {
+            return false;
+        }
+        this.append(key, null);
+        return true;
+    }
+
+    void deleteAll() {
+        this.lock.writeLock().lock();
+        try {
+            this.index = new ConcurrentHashMap<>();
+            this.unmap();
+            this.channel.truncate(0);
+            this.size = 0;
+            this.garbageBytes = 0;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to truncate " + this.file, e);
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Forces appended records to the disk. Doesn't hold the lock meanwhile, so appends aren't blocked.
+     */
+    void flush() {
+        FileChannel channel;
+        this.lock.readLock().lock();
+        try {
+            channel = this.channel;
+        } finally {
+            this.lock.readLock().unlock();
+        }
+
+        try {
+            channel.force(false);
+        } catch (ClosedChannelException e) {
+            // compacted or closed meanwhile, both force the file themselves
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to flush " + this.file, e);
+        }
+    }
+
+    /**
+     * Whether garbage takes more space than the live records and at least {@code minimumBytes}.
+     */
+    boolean shouldCompact(long minimumBytes) {
+        return this.garbageBytes >= minimumBytes && this.garbageBytes > this.size - this.garbageBytes;
+    }
+
+    /**
+     * Rewrites the file with the latest record of every key, then swaps it in atomically.
+     */
+    void compact() {
+        Path compacted = this.file.resolveSibling(this.file.getFileName() + ".compact");
+        this.lock.writeLock().lock();
+        try {
+            Map<String, Entry> newIndex = new ConcurrentHashMap<>();
+            try (FileChannel out = FileChannel.open(compacted, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                long position = 0;
+                for (Map.Entry<String, Entry> entry : this.index.entrySet()) {
+                    byte[] value = this.readValue(entry.getValue()).getBytes(StandardCharsets.UTF_8);
+                    ByteBuffer record = encode(entry.getKey(), value);
+                    int recordSize = record.remaining();
+                    while (record.hasRemaining()) {
+                        out.write(record);
+                    }
+                    newIndex.put(entry.getKey(), new Entry(position + recordSize - value.length, value.length, recordSize));
+                    position += recordSize;
+                }
+                out.force(true);
+            }
+
+            // a mapped file can't be replaced on Windows
+            this.unmap();
+            this.channel.close();
+            try {
+                Files.move(compacted, this.file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                this.index = newIndex;
+                this.garbageBytes = 0;
+            } finally {
+                // the old file is still in place when the move failed, either one has to be open again
+                this.channel = FileChannel.open(this.file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+                this.size = this.channel.size();
+                this.remap();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to compact " + this.file, e);
+        } finally {
+            try {
+                Files.deleteIfExists(compacted);
+            } catch (IOException e) {
+                // overwritten by the next compaction
+            }
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.lock.writeLock().lock();
+        try {
+            this.unmap();
+            this.channel.force(true);
+            this.channel.close();
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    private void open() throws IOException {
+        this.channel = FileChannel.open(this.file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long fileSize = this.channel.size();
+
+        ByteBuffer header = ByteBuffer.allocate(Integer.BYTES);
+        long position = 0;
+        while (position < fileSize) {
+            long recordStart = position;
+            if (!this.readFully(header.clear(), position)) break;
+            int keyLength = header.flip().getInt();
+            if (keyLength < 0 || position + Integer.BYTES + keyLength + Integer.BYTES > fileSize) break;
+
+            ByteBuffer key = ByteBuffer.allocate(keyLength);
+            if (!this.readFully(key, position + Integer.BYTES)) break;
+            position += Integer.BYTES + keyLength;
+
+            if (!this.readFully(header.clear(), position)) break;
+            int valueLength = header.flip().getInt();
+            if (valueLength < TOMBSTONE) break;
+            position += Integer.BYTES;
+
+            int payload = Math.max(valueLength, 0);
+            if (position + payload > fileSize) break;
+
+            String keyString = new String(key.array(), StandardCharsets.UTF_8);
+            long recordSize = position + payload - recordStart;
+            Entry previous = valueLength == TOMBSTONE
+                ? this.index.remove(keyString)
+                : this.index.put(keyString, new Entry(position, valueLength, recordSize));
+            if (previous != null) {
+                this.garbageBytes += previous.recordSize;
+            }
+            if (valueLength == TOMBSTONE) {
+                this.garbageBytes += recordSize;
+            }
+            position += payload;
+            this.size = position;
+        }
+
+        // drop a partially written record left behind by a crash
+        if (this.size < fileSize) {
+            this.channel.truncate(this.size);
+        }
+        this.remap();
+    }
+
+    private void append(String key, byte[] value) {
+        ByteBuffer record = encode(key, value);
+        int recordSize = record.remaining();
+
+        this.lock.writeLock().lock();
+        try {
+            long position = this.size;
+            long writePosition = position;
+            while (record.hasRemaining()) {
+                writePosition += this.channel.write(record, writePosition);
+            }
+            this.size += recordSize;
+
+            Entry previous = value == null
+                ? this.index.remove(key)
+                : this.index.put(key, new Entry(position + recordSize - value.length, value.length, recordSize));
+            if (previous != null) {
+                this.garbageBytes += previous.recordSize;
+            }
+            if (value == null) {
+                this.garbageBytes += recordSize;
+            }
+
+            long mappedBytes = this.mapped == null ? 0 : this.mapped.capacity();
+            if (mappedBytes < MAX_MAPPED_BYTES && this.size - mappedBytes >= REMAP_BYTES) {
+                this.remap();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to append to " + this.file, e);
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    private String readValue(Entry entry) {
+        byte[] bytes = new byte[entry.length];
+        long end = entry.offset + entry.length;
+        try {
+            MappedByteBuffer mapped = this.mapped;
+            if (mapped != null && end <= mapped.capacity()) {
+                mapped.slice((int) entry.offset, entry.length).get(bytes);
+            } else if (!this.readFully(ByteBuffer.wrap(bytes), entry.offset)) {
+                throw new IOException("Unexpected end of file at " + entry.offset);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read from " + this.file, e);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Maps the file up to its current size, must hold the write lock.
+     */
+    private void remap() throws IOException {
+        this.unmap();
+        long length = Math.min(this.size, MAX_MAPPED_BYTES);
+        if (length > 0) {
+            this.mapped = this.channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+        }
+    }
+
+    /**
+     * Releases the mapping right away instead of once it is garbage collected, must hold the write lock.
+     */
+    private void unmap() {
+        MappedByteBuffer mapped = this.mapped;
+        if (mapped == null) {
+            return;
+        }
+        this.mapped = null;
+        try {
+            Field field = Class.forName("sun.misc.Unsafe").getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            Object unsafe = field.get(null);
+            unsafe.getClass().getMethod("invokeCleaner", ByteBuffer.class).invoke(unsafe, mapped);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            // left to the garbage collector, replacing or truncating the file may fail on Windows until then
+        }
+    }
+
+    private boolean readFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = this.channel.read(buffer, position);
+            if (read < 0) {
+                return false;
+            }
+            position += read;
+        }
+        return true;
+    }
+
+    private static ByteBuffer encode(String key, byte[] value) {
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        int valueLength = value == null ? 0 : value.length;
+        ByteBuffer buffer = ByteBuffer.allocate(Integer.BYTES + keyBytes.length + Integer.BYTES + valueLength);
+        buffer.putInt(keyBytes.length);
+        buffer.put(keyBytes);
+        buffer.putInt(value == null ? TOMBSTONE : value.length);
+        if (value != null) {
+            buffer.put(value);
+        }
+        return buffer.flip();
+    }
+
+    private static final class Entry {
+
+        private final long offset;
+        private final int length;
+        private final long recordSize;
+
+        private Entry(long offset, int length, long recordSize) {
+            this.offset = offset;
+            this.length = length;
+            this.recordSize = recordSize;
+        }
+    }
+}
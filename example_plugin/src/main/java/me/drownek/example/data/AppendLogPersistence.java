@@ -0,0 +1,174 @@
+package me.drownek.example.data;
+
+import eu.okaeri.persistence.PersistenceCollection;
+import eu.okaeri.persistence.PersistenceEntity;
+import eu.okaeri.persistence.PersistencePath;
+import eu.okaeri.persistence.raw.RawPersistence;
+import lombok.NonNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+/**
+ * Local storage keeping every collection in a single append-only log file.
+ * <p>
+ * Compared to one file per document, saves are a single append instead of a file
+ * create and startup reads one file per collection. Reads go through a memory mapping
+ * of the log, and the log is compacted periodically once garbage outweighs live records.
+ * Appends are forced to the disk every sync interval rather than on each write, so a crash
+ * can lose the records written since the last sync.
+ */
+public class AppendLogPersistence extends RawPersistence {
+
+    // don't bother rewriting small logs
+    private static final long COMPACTION_MINIMUM_BYTES = 1024 * 1024;
+
+    private final File directory;
+    private final Logger logger;
+    private final Map<String, AppendLog> logs = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService maintenanceExecutor;
+
+    public AppendLogPersistence(@NonNull File directory, @NonNull Logger logger, long compactionIntervalSeconds, long syncIntervalSeconds) {
+        super(PersistencePath.of(directory.getPath()), false, false);
+        this.directory = directory;
+        this.logger = logger;
+        this.maintenanceExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "example-storage-maintenance");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.maintenanceExecutor.scheduleWithFixedDelay(this::compact, compactionIntervalSeconds, compactionIntervalSeconds, TimeUnit.SECONDS);
+        this.maintenanceExecutor.scheduleWithFixedDelay(this::sync, syncIntervalSeconds, syncIntervalSeconds, TimeUnit.SECONDS);
+    }
+
+    @Override
+    public void registerCollection(@NonNull PersistenceCollection collection) {
+        this.log(collection);
+        super.registerCollection(collection);
+    }
+
+    @Override
+    public long count(@NonNull PersistenceCollection collection) {
+        return this.log(collection).count();
+    }
+
+    @Override
+    public boolean exists(@NonNull PersistenceCollection collection, @NonNull PersistencePath path) {
+        return this.log(collection).exists(path.getValue());
+    }
+
+    @Override
+    public Optional<String> read(@NonNull PersistenceCollection collection, @NonNull PersistencePath path) {
+        return this.log(collection).read(path.getValue());
+    }
+
+    @Override
+    public Map<PersistencePath, String> readAll(@NonNull PersistenceCollection collection) {
+        Map<PersistencePath, String> result = new LinkedHashMap<>();
+        this.log(collection).readAll().forEach((key, value) -> result.put(PersistencePath.of(key), value));
+        return result;
+    }
+
+    @Override
+    public Stream<PersistenceEntity<String>> streamAll(@NonNull PersistenceCollection collection) {
+        AppendLog log = this.log(collection);
+        // values are read lazily, so streaming does not hold the whole collection in memory
+        List<String> keys = new ArrayList<>(log.keys());
+        return keys.stream()
+            .map(key -> log.read(key).map(value -> new PersistenceEntity<>(PersistencePath.of(key), value)))
+            .filter(Optional::isPresent)
+            .map(Optional::get);
+    }
+
+    @Override
+    public boolean write(@NonNull PersistenceCollection collection, @NonNull PersistencePath path, @NonNull String raw) {
+        this.log(collection).write(path.getValue(), raw);
+        return true;
+    }
+
+    @Override
+    public boolean delete(@NonNull PersistenceCollection collection, @NonNull PersistencePath path) {
+        return this.log(collection).delete(path.getValue());
+    }
+
+    @Override
+    public boolean deleteAll(@NonNull PersistenceCollection collection) {
+        this.log(collection).deleteAll();
+        return true;
+    }
+
+    @Override
+    public long deleteAll() {
+        long deleted = 0;
+        for (AppendLog log : this.logs.values()) {
+            deleted += log.count();
+            log.deleteAll();
+        }
+        return deleted;
+    }
+
+    public void flush() {
+        this.logs.values().forEach(AppendLog::flush);
+    }
+
+    private void sync() {
+        try {
+            this.flush();
+        } catch (Exception e) {
+            // logged instead of thrown, an exception would cancel the scheduled syncs
+            this.logger.log(Level.SEVERE, "Failed to sync storage logs", e);
+        }
+    }
+
+    /**
+     * Compacts every log where garbage outweighs live records.
+     */
+    public void compact() {
+        this.logs.forEach((name, log) -> {
+            if (!log.shouldCompact(COMPACTION_MINIMUM_BYTES)) {
+                return;
+            }
+            try {
+                long start = System.currentTimeMillis();
+                log.compact();
+                this.logger.info("Compacted storage log " + name + " in " + (System.currentTimeMillis() - start) + "ms");
+            } catch (Exception e) {
+                this.logger.log(Level.SEVERE, "Failed to compact storage log " + name, e);
+            }
+        });
+    }
+
+    @Override
+    public void close() throws IOException {
+        // not interrupted, that would close the log channels in the middle of a compaction or sync
+        this.maintenanceExecutor.shutdown();
+        try {
+            if (!this.maintenanceExecutor.awaitTermination(30, TimeUnit.SECONDS)) {
+                this.logger.warning("Storage log maintenance did not finish within 30 seconds");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        this.compact();
+        for (AppendLog log : this.logs.values()) {
+            log.close();
+        }
+        this.logs.clear();
+    }
+
+    private AppendLog log(PersistenceCollection collection) {
+        return this.logs.computeIfAbsent(collection.getValue(), name -> new AppendLog(new File(this.directory, name + ".log")));
+    }
+}
@@ -0,0 +1,80 @@
+package me.drownek.example.data;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Prefix tree of player names, keys are lower-cased, values keep the original casing.
+ */
+class NameTrie {
+
+    private final Node root = new Node();
+
+    synchronized void put(String key, String name) {
+        Node node = this.root;
+        for (int i = 0; i < key.length(); i++) {
+            node = node.children.computeIfAbsent(key.charAt(i), c -> new Node());
+        }
+        node.name = name;
+    }
+
+    /**
+     * Removes the name stored under {@code key} along with the nodes nothing is stored below anymore.
+     */
+    synchronized void remove(String key) {
+        Deque<Node> path = new ArrayDeque<>();
+        Node node = this.root;
+        for (int i = 0; i < key.length() && node != null; i++) {
+            path.push(node);
+            node = node.children.get(key.charAt(i));
+        }
+        if (node == null) {
+            return;
+        }
+        node.name = null;
+
+        for (int i = key.length() - 1; i >= 0 && node.name == null && node.children.isEmpty(); i--) {
+            Node parent = path.pop();
+            parent.children.remove(key.charAt(i));
+            node = parent;
+        }
+    }
+
+    /**
+     * Collects at most {@code limit} names starting with {@code prefix}, in alphabetical order.
+     */
+    synchronized List<String> find(String prefix, int limit) {
+        List<String> result = new ArrayList<>(Math.min(limit, 16));
+
+        Node node = this.root;
+        for (int i = 0; i < prefix.length() && node != null; i++) {
+            node = node.children.get(prefix.charAt(i));
+        }
+        if (node == null) {
+            return result;
+        }
+
+        Deque<Node> stack = new ArrayDeque<>();
+        stack.push(node);
+        while (!stack.isEmpty() && result.size() < limit) {
+            Node current = stack.pop();
+            if (current.name != null) {
+                result.add(current.name);
+            }
+            List<Node> children = new ArrayList<>(current.children.values());
+            for (int i = children.size() - 1; i >= 0; i--) {
+                stack.push(children.get(i));
+            }
+        }
+        return result;
+    }
+
+    private static class Node {
+        private final Map<Character, Node> children = new TreeMap<>();
+        private String name;
+    }
+}
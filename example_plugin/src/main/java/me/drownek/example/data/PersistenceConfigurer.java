@@ -33,25 +33,51 @@ public class PersistenceConfigurer {
                 // or use YamlBukkitPersistence.of(plugin) for default pluginFolder/storage/* (best used for simplest plugins with single storage backend)
                 // same as: new DocumentPersistence(new FlatPersistence(new File(dataFolder, "storage"), ".yml"), YamlBukkitConfigurer::new, new SerdesBukkit())
                 return YamlBukkitPersistence.of(new File(plugin.getDataFolder(), "storage"));
+            case LOG:
+                // single append-only log per collection, json keeps every record on one compact line
+                AppendLogPersistence logPersistence = new AppendLogPersistence(
+                    new File(plugin.getDataFolder(), "storage-log"),
+                    plugin.getLogger(),
+                    config.storage.logCompactionIntervalSeconds,
+                    config.storage.logSyncIntervalSeconds
+                );
+                return new DocumentPersistence(logPersistence, JsonSimpleConfigurer::new, new SerdesBukkit());
             case MYSQL:
                 // setup hikari based on your needs, e.g. using config
-                HikariConfig mariadbHikari = new HikariConfig();
-                mariadbHikari.setJdbcUrl(config.storage.uri);
-                mariadbHikari.setUsername(config.storage.user);
-                mariadbHikari.setPassword(config.storage.password);
+                HikariConfig mariadbHikari = createHikariConfig(config.storage);
+                if (config.storage.cachePreparedStatements) {
+                    mariadbHikari.addDataSourceProperty("cachePrepStmts", "true");
+                    mariadbHikari.addDataSourceProperty("prepStmtCacheSize", String.valueOf(config.storage.preparedStatementCacheSize));
+                    mariadbHikari.addDataSourceProperty("prepStmtCacheSqlLimit", "2048");
+                    mariadbHikari.addDataSourceProperty("useServerPrepStmts", "true");
+                }
+                // lets the driver send batched upserts as one multi-row statement
+                mariadbHikari.addDataSourceProperty("rewriteBatchedStatements", "true");
                 // it is REQUIRED to use json configurer for the mariadb backend
                 return new DocumentPersistence(new MariaDbPersistence(basePath, mariadbHikari), JsonSimpleConfigurer::new, new SerdesBukkit());
             case POSTGRES:
                 // setup hikari based on your needs, e.g. using config
-                HikariConfig postgresHikari = new HikariConfig();
-                postgresHikari.setJdbcUrl(config.storage.uri);
-                postgresHikari.setUsername(config.storage.user);
-                postgresHikari.setPassword(config.storage.password);
+                HikariConfig postgresHikari = createHikariConfig(config.storage);
                 postgresHikari.setDriverClassName("org.postgresql.Driver");
+                if (config.storage.cachePreparedStatements) {
+                    postgresHikari.addDataSourceProperty("prepareThreshold", "1");
+                    postgresHikari.addDataSourceProperty("preparedStatementCacheQueries", String.valueOf(config.storage.preparedStatementCacheSize));
+                }
+                // lets the driver send batched upserts as one multi-row statement
+                postgresHikari.addDataSourceProperty("reWriteBatchedInserts", "true");
                 // it is REQUIRED to use json configurer for the mariadb backend
                 return new DocumentPersistence(new PostgresPersistence(basePath, postgresHikari), JsonSimpleConfigurer::new, new SerdesBukkit());
             default:
                 throw new IllegalStateException("Unexpected value: " + config.storage.backend);
         }
     }
+
+    private static HikariConfig createHikariConfig(PluginConfig.StorageConfig storage) {
+        HikariConfig hikari = new HikariConfig();
+        hikari.setJdbcUrl(storage.uri);
+        hikari.setUsername(storage.user);
+        hikari.setPassword(storage.password);
+        hikari.setMaximumPoolSize(storage.poolSize);
+        return hikari;
+    }
 }
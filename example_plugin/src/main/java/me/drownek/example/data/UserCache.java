@@ -0,0 +1,179 @@
+package me.drownek.example.data;
+
+import eu.okaeri.injector.annotation.Inject;
+import me.drownek.example.config.PluginConfig;
+import me.drownek.platform.core.annotation.Component;
+import org.bukkit.Bukkit;
+import org.bukkit.OfflinePlayer;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+
+/**
+ * Bounded write-behind cache in front of {@link UserRepository}.
+ * <p>
+ * Reads are served from memory, writes only snapshot the user as dirty and are
+ * flushed to the persistence in a single batch every configured interval.
+ */
+@Component
+public class UserCache {
+
+    private @Inject UserRepository repository;
+    private @Inject UserSavePipeline savePipeline;
+    private @Inject PluginConfig config;
+    private @Inject Plugin plugin;
+
+    // access-ordered, so the least recently used user is evicted first
+    private final Map<UUID, User> cache = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<UUID, User> eldest) {
+            return this.size() > config.storage.cache.maximumSize;
+        }
+    });
+
+    // saved users waiting for the next flush, evicted ones are loaded back from here
+    private final Map<UUID, UserSnapshot> dirty = new ConcurrentHashMap<>();
+
+    // snapshots handed over to the writer, reads must not go to the storage before they are written
+    private final Map<UUID, UserSnapshot> writing = new ConcurrentHashMap<>();
+
+    // loading and updating a user happen under its lock, so a load can't miss a change being made
+    private final Object[] locks = new Object[64];
+
+    // flushes are written one after another, so an older snapshot of a user never lands last
+    private CompletableFuture<Void> lastFlush = CompletableFuture.completedFuture(null);
+
+    private BukkitTask flushTask;
+
+    {
+        for (int i = 0; i < this.locks.length; i++) {
+            this.locks[i] = new Object();
+        }
+    }
+
+    public void start() {
+        long intervalTicks = config.storage.cache.flushIntervalSeconds * 20L;
+        this.flushTask = Bukkit.getScheduler().runTaskTimerAsynchronously(this.plugin, () -> this.flush(), intervalTicks, intervalTicks);
+    }
+
+    public void stop() {
+        if (this.flushTask != null) {
+            this.flushTask.cancel();
+            this.flushTask = null;
+        }
+        this.flush().join();
+    }
+
+    public User get(UUID uuid) {
+        User user = this.cache.get(uuid);
+        if (user != null) {
+            return user;
+        }
+
+        synchronized (this.lockFor(uuid)) {
+            user = this.getIfCached(uuid).orElseGet(() -> this.repository.findOrCreateByPath(uuid));
+            User existing = this.cache.putIfAbsent(uuid, user);
+            return existing != null ? existing : user;
+        }
+    }
+
+    /**
+     * Returns the user only if it is held in memory, never touching the storage.
+     */
+    public Optional<User> getIfCached(UUID uuid) {
+        User user = this.cache.get(uuid);
+        if (user != null) {
+            return Optional.of(user);
+        }
+
+        UserSnapshot snapshot = this.dirty.get(uuid);
+        if (snapshot == null) {
+            snapshot = this.writing.get(uuid);
+        }
+        return Optional.ofNullable(snapshot).map(UserSnapshot::toDocument);
+    }
+
+    public User getByPlayer(OfflinePlayer offlinePlayer) {
+        return this.get(offlinePlayer.getUniqueId());
+    }
+
+    /**
+     * Schedules the user to be written with the next flush. Its fields are copied right away,
+     * so it must be called on the thread that changed the user.
+     */
+    public void save(User user) {
+        this.dirty.put(user.getUuid(), new UserSnapshot(user));
+    }
+
+    /**
+     * Changes the user and schedules it to be written. Updates of the same user never interleave.
+     * When another instance of the user is held in memory, e.g. {@code user} was streamed from
+     * the storage, the change is made to the one in memory instead.
+     *
+     * @return the changed instance
+     */
+    public User update(User user, Consumer<User> change) {
+        UUID uuid = user.getUuid();
+        synchronized (this.lockFor(uuid)) {
+            User current = this.getIfCached(uuid).orElse(user);
+            change.accept(current);
+            this.save(current);
+            return current;
+        }
+    }
+
+    private Object lockFor(UUID uuid) {
+        return this.locks[Math.floorMod(uuid.hashCode(), this.locks.length)];
+    }
+
+    /**
+     * Hands all dirty users over to the {@link UserSavePipeline} once the previous flush was written.
+     * The returned future completes once they were written.
+     */
+    public synchronized CompletableFuture<Void> flush() {
+        if (this.dirty.isEmpty()) {
+            return this.lastFlush;
+        }
+
+        List<UserSnapshot> batch = new ArrayList<>(this.dirty.size());
+        for (Map.Entry<UUID, UserSnapshot> entry : this.dirty.entrySet()) {
+            // into writing first, in between a load would go to the storage
+            this.writing.put(entry.getKey(), entry.getValue());
+            this.dirty.remove(entry.getKey(), entry.getValue());
+            batch.add(entry.getValue());
+        }
+
+        this.lastFlush = this.lastFlush
+            .thenCompose(previous -> this.savePipeline.submit(batch))
+            .handle((result, throwable) -> {
+                if (throwable != null) {
+                    this.plugin.getLogger().log(Level.SEVERE, "Failed to flush " + batch.size() + " user(s)", throwable);
+                }
+                this.finishWriting(batch, throwable != null);
+                return null;
+            });
+        return this.lastFlush;
+    }
+
+    private synchronized void finishWriting(List<UserSnapshot> batch, boolean failed) {
+        for (UserSnapshot snapshot : batch) {
+            UUID uuid = snapshot.getUuid();
+            // a newer snapshot handed to a later flush or saved meanwhile replaces the failed one
+            if (failed && this.writing.get(uuid) == snapshot) {
+                this.dirty.putIfAbsent(uuid, snapshot);
+            }
+            this.writing.remove(uuid, snapshot);
+        }
+    }
+}
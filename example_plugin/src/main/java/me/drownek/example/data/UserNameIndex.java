@@ -0,0 +1,91 @@
+package me.drownek.example.data;
+
+import eu.okaeri.injector.annotation.Inject;
+import me.drownek.example.config.PluginConfig;
+import me.drownek.platform.core.annotation.Component;
+import org.bukkit.Bukkit;
+import org.bukkit.OfflinePlayer;
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.plugin.Plugin;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Case-insensitive index of player names, so lookups don't have to scan {@link Bukkit#getOfflinePlayers()}.
+ * <p>
+ * Built asynchronously on startup and kept up to date from join events.
+ */
+@Component
+public class UserNameIndex implements Listener {
+
+    private @Inject PluginConfig config;
+    private @Inject Plugin plugin;
+
+    private final Map<String, UUID> uuids = new ConcurrentHashMap<>();
+    private final Map<UUID, String> names = new ConcurrentHashMap<>();
+    private final NameTrie trie = new NameTrie();
+
+    private volatile boolean ready;
+
+    public void buildAsync() {
+        Bukkit.getScheduler().runTaskAsynchronously(this.plugin, () -> {
+            long start = System.currentTimeMillis();
+            for (OfflinePlayer offlinePlayer : Bukkit.getOfflinePlayers()) {
+                if (offlinePlayer.getName() != null) {
+                    this.put(offlinePlayer.getUniqueId(), offlinePlayer.getName());
+                }
+            }
+            this.ready = true;
+            this.plugin.getLogger().info("Indexed " + this.uuids.size() + " player name(s) in " + (System.currentTimeMillis() - start) + "ms");
+        });
+    }
+
+    public Optional<UUID> findUuid(String name) {
+        UUID uuid = this.uuids.get(name.toLowerCase(Locale.ROOT));
+        if (uuid != null) {
+            return Optional.of(uuid);
+        }
+        if (this.ready) {
+            return Optional.empty();
+        }
+        // index is still being built, online players are always resolvable
+        Player player = Bukkit.getPlayerExact(name);
+        return Optional.ofNullable(player).map(Player::getUniqueId);
+    }
+
+    public List<String> suggest(String prefix) {
+        return this.trie.find(prefix.toLowerCase(Locale.ROOT), this.config.userSuggestionLimit);
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onJoin(PlayerJoinEvent event) {
+        Player player = event.getPlayer();
+        this.put(player.getUniqueId(), player.getName());
+    }
+
+    private synchronized void put(UUID uuid, String name) {
+        String key = name.toLowerCase(Locale.ROOT);
+
+        // player changed name since the last time we saw them
+        String previous = this.names.put(uuid, name);
+        if (previous != null && !previous.equalsIgnoreCase(name)) {
+            String previousKey = previous.toLowerCase(Locale.ROOT);
+            // another player may have taken the old name meanwhile, it stays suggested then
+            if (this.uuids.remove(previousKey, uuid)) {
+                this.trie.remove(previousKey);
+            }
+        }
+
+        this.uuids.put(key, uuid);
+        this.trie.put(key, name);
+    }
+}
@@ -0,0 +1,151 @@
+package me.drownek.example.data;
+
+import eu.okaeri.injector.annotation.Inject;
+import me.drownek.example.config.PluginConfig;
+import me.drownek.platform.core.annotation.Component;
+import org.bukkit.plugin.Plugin;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.stream.Collectors;
+
+/**
+ * Writes user snapshots to the storage off the calling thread.
+ * <p>
+ * Serialization and I/O happen in batches on a bounded executor. When its queue is full
+ * the submitting thread writes the batch itself, which slows down producers instead of
+ * buffering without limit. Batches submitted while the executor isn't running are
+ * written on the submitting thread as well.
+ */
+@Component
+public class UserSavePipeline {
+
+    private @Inject UserRepository repository;
+    private @Inject PluginConfig config;
+    private @Inject Plugin plugin;
+
+    private final AtomicInteger pendingUsers = new AtomicInteger();
+    private final LongAdder writtenUsers = new LongAdder();
+    private final LongAdder failedUsers = new LongAdder();
+    private final LongAdder writtenBatches = new LongAdder();
+    private final LongAdder totalLatencyNanos = new LongAdder();
+    private final AtomicLong maxLatencyNanos = new AtomicLong();
+
+    private volatile ThreadPoolExecutor executor;
+
+    public synchronized void start() {
+        AtomicInteger threadId = new AtomicInteger();
+        int threads = Math.max(1, this.config.storage.writeThreads);
+        this.executor = new ThreadPoolExecutor(
+            threads, threads,
+            0L, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(Math.max(1, this.config.storage.writeQueueCapacity)),
+            runnable -> {
+                Thread thread = new Thread(runnable, "example-storage-writer-" + threadId.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            },
+            // unlike CallerRunsPolicy this also runs batches rejected after shutdown, instead of dropping them
+            (runnable, executor) -> runnable.run()
+        );
+    }
+
+    /**
+     * Writes the snapshots asynchronously in batches of configured size.
+     * The returned future completes once every batch was written.
+     */
+    CompletableFuture<Void> submit(List<UserSnapshot> snapshots) {
+        this.pendingUsers.addAndGet(snapshots.size());
+
+        ThreadPoolExecutor executor = this.executor;
+        Executor target = executor != null ? executor : Runnable::run;
+        int batchSize = Math.max(1, this.config.storage.batchSize);
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        for (int from = 0; from < snapshots.size(); from += batchSize) {
+            List<UserSnapshot> batch = snapshots.subList(from, Math.min(snapshots.size(), from + batchSize));
+            futures.add(CompletableFuture.runAsync(() -> this.write(batch), target));
+        }
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture[0]));
+    }
+
+    private void write(List<UserSnapshot> batch) {
+        try {
+            this.repository.saveAll(batch.stream()
+                .map(UserSnapshot::toDocument)
+                .collect(Collectors.toList()));
+            this.writtenUsers.add(batch.size());
+            this.writtenBatches.increment();
+        } catch (RuntimeException e) {
+            this.failedUsers.add(batch.size());
+            throw e;
+        } finally {
+            this.pendingUsers.addAndGet(-batch.size());
+            long now = System.nanoTime();
+            for (UserSnapshot snapshot : batch) {
+                long latency = now - snapshot.getCreatedAt();
+                this.totalLatencyNanos.add(latency);
+                this.maxLatencyNanos.accumulateAndGet(latency, Math::max);
+            }
+        }
+    }
+
+    public synchronized void stop() {
+        if (this.executor == null) {
+            return;
+        }
+        this.executor.shutdown();
+        try {
+            if (!this.executor.awaitTermination(30, TimeUnit.SECONDS)) {
+                this.plugin.getLogger().log(Level.WARNING, "Storage writes did not finish within 30 seconds");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        this.executor = null;
+    }
+
+    /**
+     * Amount of batches waiting for a free writer thread.
+     */
+    public int getQueueDepth() {
+        ThreadPoolExecutor executor = this.executor;
+        return executor == null ? 0 : executor.getQueue().size();
+    }
+
+    public int getPendingUsers() {
+        return this.pendingUsers.get();
+    }
+
+    public long getWrittenUsers() {
+        return this.writtenUsers.sum();
+    }
+
+    public long getFailedUsers() {
+        return this.failedUsers.sum();
+    }
+
+    public long getWrittenBatches() {
+        return this.writtenBatches.sum();
+    }
+
+    /**
+     * Average time between submitting a user and finishing its write, in milliseconds.
+     */
+    public double getAverageLatencyMillis() {
+        long count = this.writtenUsers.sum() + this.failedUsers.sum();
+        return count == 0 ? 0 : this.totalLatencyNanos.sum() / (double) count / 1_000_000;
+    }
+
+    public double getMaxLatencyMillis() {
+        return this.maxLatencyNanos.get() / 1_000_000.0;
+    }
+}
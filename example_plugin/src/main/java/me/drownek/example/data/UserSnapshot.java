@@ -0,0 +1,47 @@
+package me.drownek.example.data;
+
+import eu.okaeri.persistence.PersistenceCollection;
+import eu.okaeri.persistence.PersistencePath;
+import eu.okaeri.persistence.document.Document;
+import eu.okaeri.persistence.document.DocumentPersistence;
+
+import java.math.BigDecimal;
+import java.util.UUID;
+
+/**
+ * Immutable copy of the {@link User} fields, taken on the thread requesting the save,
+ * so the user can be serialized elsewhere while it is still being modified.
+ */
+final class UserSnapshot {
+
+    private final DocumentPersistence persistence;
+    private final PersistenceCollection collection;
+    private final PersistencePath path;
+    private final BigDecimal balance;
+    private final long createdAt = System.nanoTime();
+
+    UserSnapshot(User user) {
+        this.persistence = user.getPersistence();
+        this.collection = user.getCollection();
+        this.path = user.getPath();
+        this.balance = user.getBalance();
+    }
+
+    UUID getUuid() {
+        return this.path.toUUID();
+    }
+
+    long getCreatedAt() {
+        return this.createdAt;
+    }
+
+    /**
+     * Creates a detached document holding the snapshot values, ready to be written.
+     */
+    User toDocument() {
+        Document document = this.persistence.createDocument(this.collection, this.path);
+        User user = document.into(User.class);
+        user.setBalance(this.balance);
+        return user;
+    }
+}
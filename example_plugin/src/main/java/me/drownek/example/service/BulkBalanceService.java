@@ -0,0 +1,70 @@
+package me.drownek.example.service;
+
+import eu.okaeri.injector.annotation.Inject;
+import me.drownek.example.config.PluginConfig;
+import me.drownek.example.data.User;
+import me.drownek.example.data.UserCache;
+import me.drownek.example.data.UserRepository;
+import me.drownek.platform.core.annotation.Component;
+
+import java.math.BigDecimal;
+import java.util.Iterator;
+import java.util.OptionalLong;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.LongConsumer;
+import java.util.function.UnaryOperator;
+import java.util.stream.Stream;
+
+/**
+ * Applies a balance change to every stored user.
+ * <p>
+ * Users are streamed from the repository and changed through the {@link UserCache}, so users
+ * loaded in memory get the change on top of their newer balances and concurrent updates of the
+ * same user are not lost. The cache is flushed after each batch, so only a single batch of
+ * changed users is held in memory.
+ */
+@Component
+public class BulkBalanceService {
+
+    private @Inject UserRepository repository;
+    private @Inject UserCache userCache;
+    private @Inject PluginConfig config;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    /**
+     * Runs the operation on the calling thread, reporting 0 once it started and then the amount
+     * of processed users after each batch.
+     *
+     * @return amount of processed users, empty when another bulk operation is already running
+     */
+    public OptionalLong apply(UnaryOperator<BigDecimal> operation, LongConsumer progress) {
+        if (!this.running.compareAndSet(false, true)) {
+            return OptionalLong.empty();
+        }
+
+        int batchSize = Math.max(1, this.config.storage.batchSize);
+        long processed = 0;
+        try (Stream<User> users = this.repository.streamAll()) {
+            progress.accept(0);
+            Iterator<User> iterator = users.iterator();
+            while (iterator.hasNext()) {
+                this.userCache.update(iterator.next(), user -> user.setBalance(operation.apply(user.getBalance())));
+                processed++;
+
+                if (processed % batchSize == 0) {
+                    this.userCache.flush().join();
+                    progress.accept(processed);
+                }
+            }
+
+            this.userCache.flush().join();
+            if (processed % batchSize != 0) {
+                progress.accept(processed);
+            }
+            return OptionalLong.of(processed);
+        } finally {
+            this.running.set(false);
+        }
+    }
+}
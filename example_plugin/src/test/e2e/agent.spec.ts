@@ -0,0 +1,38 @@
+import { expect, test } from '@drownek/paper-e2e-runner';
+
+async function failureOf(promise: Promise<unknown>): Promise<string> {
+    try {
+        await promise;
+    } catch (e) {
+        return (e as Error).message;
+    }
+    throw new Error('Expected the call to fail, but it succeeded');
+}
+
+test('dispatch waits until the command ran', async ({ player, server }) => {
+    await server.dispatch(`give ${player.username} diamond 3`);
+
+    // no polling, the item is there as soon as dispatch resolved
+    const diamonds = (await server.getInventory(player.username)).filter(item => item.type === 'minecraft:diamond');
+    expect(diamonds.reduce((sum, item) => sum + item.amount, 0)).toBe(3);
+});
+
+test('dispatch rejects commands the server does not know', async ({ server }) => {
+    expect(await failureOf(server.dispatch('no-such-command'))).toContain('Server did not handle command');
+});
+
+test('hasPermission reflects op status', async ({ player, server }) => {
+    expect(await server.hasPermission(player.username, 'example')).toBe(false);
+    await player.makeOp();
+    expect(await server.hasPermission(player.username, 'example')).toBe(true);
+});
+
+test('getPlayer reports the game mode set through dispatch', async ({ player, server }) => {
+    await server.dispatch(`gamemode creative ${player.username}`);
+    expect((await server.getPlayer(player.username)).gameMode).toBe('creative');
+});
+
+test('getBalance fails without a Vault economy', async ({ player, server }) => {
+    // the example plugin doesn't register one, the query must fail instead of answering 0
+    expect(await failureOf(server.getBalance(player.username))).toMatch(/Vault is not installed|No economy plugin/);
+});
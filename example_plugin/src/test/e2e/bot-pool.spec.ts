@@ -0,0 +1,35 @@
+import { expect, sleep, test } from '@drownek/paper-e2e-runner';
+import type { TestContext } from '@drownek/paper-e2e-runner';
+
+// the pool hands out the bot returned last, once it was reset. The bot of one test is back
+// in the pool while the next test runs, so the test after that gets it again, however many
+// bots the pool holds
+const seen: string[] = [];
+
+async function expectResetThenDirty({ player }: TestContext) {
+    seen.push(player.username);
+
+    // state a previous test left behind must be gone, as the bot sees it
+    expect(player.bot.game.gameMode).toBe('survival');
+    expect(player.inventory.items()).toEqual([]);
+    const { x, z } = player.bot.entity.position;
+    expect(Math.abs(x - 200) > 1 || Math.abs(z - 200) > 1).toBe(true);
+
+    // only an operator can change their own game mode
+    player.chat('/gamemode creative');
+    await sleep(1000);
+    expect(player.bot.game.gameMode).toBe('survival');
+
+    await player.makeOp();
+    await player.setGameMode('creative');
+    await player.giveItem('diamond', 3);
+    await player.teleport(200, 100, 200);
+}
+
+for (let i = 1; i <= 4; i++) {
+    test(`pooled bot starts clean (${i})`, expectResetThenDirty);
+}
+
+test('pooled bots are reused', async () => {
+    expect(new Set(seen).size).toBeLessThan(seen.length);
+});
@@ -0,0 +1,30 @@
+import { expect, test } from '@drownek/paper-e2e-runner';
+import { randomUUID } from 'node:crypto';
+
+// dispatch is acknowledged by the agent, or with e2e { agent.set(false) } by a marker command
+// written after the batch, both only resolve once the server ran the command
+
+function objectiveName(): string {
+    return `ack_${randomUUID().slice(0, 8)}`;
+}
+
+test('commands dispatched together resolve after all of them ran in order', async ({ player, server }) => {
+    const objective = objectiveName();
+    await Promise.all([
+        server.dispatch(`scoreboard objectives add ${objective} dummy`),
+        server.dispatch(`scoreboard players set ${player.username} ${objective} 1`),
+        server.dispatch(`scoreboard players add ${player.username} ${objective} 2`),
+    ]);
+
+    server.execute(`scoreboard players get ${player.username} ${objective}`);
+    await expect(server).toHaveReceivedMessage(`${player.username} has 3 [${objective}]`);
+});
+
+test('many dispatches in one tick are all acknowledged', async ({ player, server }) => {
+    const objective = objectiveName();
+    await server.dispatch(`scoreboard objectives add ${objective} dummy`);
+    await Promise.all(Array.from({ length: 50 }, () => server.dispatch(`scoreboard players add ${player.username} ${objective} 1`)));
+
+    server.execute(`scoreboard players get ${player.username} ${objective}`);
+    await expect(server).toHaveReceivedMessage(`${player.username} has 50 [${objective}]`);
+});
@@ -0,0 +1,27 @@
+import { expect, test, waitUntil } from '@drownek/paper-e2e-runner';
+import type { TestContext } from '@drownek/paper-e2e-runner';
+
+// each test waits for the other one to start, so they only pass when running at the same time
+const usernames = new Map<string, string>();
+
+async function expectIsolated(name: string, other: string, { player, server }: TestContext) {
+    usernames.set(name, player.username);
+    await waitUntil(() => usernames.has(other), { timeout: 30000, message: `${other} did not run at the same time as ${name}` });
+
+    server.execute(`tell ${player.username} marker-${name}`);
+    await expect(player).toHaveReceivedMessage(`marker-${name}`);
+    await expect(player).not.toHaveReceivedMessage(`marker-${other}`, { timeout: 1000 });
+}
+
+test.concurrent('concurrent test A only sees messages of its own bot', async context => {
+    await expectIsolated('A', 'B', context);
+});
+
+test.concurrent('concurrent test B only sees messages of its own bot', async context => {
+    await expectIsolated('B', 'A', context);
+});
+
+test('concurrent tests got a bot each', async () => {
+    expect(usernames.size).toBe(2);
+    expect(usernames.get('A')).not.toBe(usernames.get('B'));
+});
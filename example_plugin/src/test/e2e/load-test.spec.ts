@@ -0,0 +1,33 @@
+import { loadTest } from '@drownek/paper-e2e-runner';
+
+loadTest('balance commands stay fast under load', {
+    bots: 5,
+    loginInterval: 200,
+    rate: 10,
+    duration: 5000,
+    setup: player => player.makeOp(),
+    thresholds: { p95: 2000, errorRate: 0 },
+}, async ({ player, measure }) => {
+    await measure('set-balance', async () => {
+        const reply = player.nextMessage();
+        player.chat(`/example set-balance ${player.username} 100`);
+        await reply;
+    });
+    await measure('get-balance', async () => {
+        const reply = player.nextMessage();
+        player.chat(`/example get-balance ${player.username}`);
+        await reply;
+    });
+});
+
+loadTest('failing actions count towards the error rate', {
+    bots: 2,
+    rate: 10,
+    duration: 2000,
+    // every fourth action fails, which stays within the allowed error rate
+    thresholds: { errorRate: 0.5 },
+}, async ({ iteration }) => {
+    if (iteration % 4 === 0) {
+        throw new Error('simulated failure');
+    }
+});
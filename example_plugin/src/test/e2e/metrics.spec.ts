@@ -0,0 +1,14 @@
+import { expect, test } from '@drownek/paper-e2e-runner';
+
+test('saving computers does not lag the server', async ({ player, server }) => {
+    await player.makeOp();
+    player.chat('/example polymorphic computer');
+    await expect(player).toHaveReceivedMessage('Laptop');
+
+    // the worst single tick, with headroom for a GC pause or chunk load on a busy CI runner
+    await expect(server).toKeepMsptBelow(100);
+});
+
+test('an idle server keeps its ticks short', async ({ server }) => {
+    await expect(server).toKeepMsptBelow(100);
+});
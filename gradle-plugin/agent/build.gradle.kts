@@ -0,0 +1,33 @@
+plugins {
+    java
+}
+
+version = file("../../version.txt").readText().trim()
+
+repositories {
+    mavenCentral()
+    maven("https://repo.papermc.io/repository/maven-public/")
+}
+
+dependencies {
+    // Gson ships with the server, nothing needs to be shaded
+    compileOnly("org.spigotmc:spigot-api:1.16.5-R0.1-SNAPSHOT")
+}
+
+tasks.withType<JavaCompile> {
+    // runs on whatever Java the tested server version needs
+    options.release.set(8)
+    options.encoding = "UTF-8"
+}
+
+tasks.processResources {
+    val agentVersion = project.version.toString()
+    inputs.property("version", agentVersion)
+    filesMatching("plugin.yml") {
+        expand("version" to agentVersion)
+    }
+}
+
+tasks.jar {
+    archiveFileName.set("paper-e2e-agent.jar")
+}
@@ -0,0 +1,224 @@
+package me.drownek.papere2e.agent;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+import org.bukkit.Bukkit;
+import org.bukkit.Location;
+import org.bukkit.OfflinePlayer;
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.configuration.file.FileConfiguration;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.bukkit.entity.Player;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.inventory.PlayerInventory;
+import org.bukkit.inventory.meta.ItemMeta;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.plugin.RegisteredServiceProvider;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Methods the runner can call, all of them run on the main thread.
+ */
+class AgentHandlers {
+
+    private static final Gson GSON = new Gson();
+
+    @FunctionalInterface
+    interface Handler {
+        JsonElement handle(JsonObject params) throws Exception;
+    }
+
+    private final Map<String, Handler> handlers = new HashMap<>();
+    private final PluginReloader reloader = new PluginReloader();
+    private final StateResetter resetter;
+    private final File pluginsFolder;
+
+    AgentHandlers(PaperE2EAgent plugin, TickMonitor tickMonitor) {
+        this.pluginsFolder = plugin.getDataFolder().getParentFile();
+        this.resetter = new StateResetter(plugin, this.reloader);
+        this.handlers.put("ping", params -> new JsonPrimitive(plugin.getDescription().getVersion()));
+        this.handlers.put("execute", this::execute);
+        this.handlers.put("player", this::player);
+        this.handlers.put("inventory", this::inventory);
+        this.handlers.put("hasPermission", this::hasPermission);
+        this.handlers.put("balance", this::balance);
+        this.handlers.put("config", this::config);
+        this.handlers.put("reloadPlugin", this::reloadPlugin);
+        this.handlers.put("onlinePlayers", this::onlinePlayers);
+        this.handlers.put("resetState", params -> GSON.toJsonTree(this.resetter.reset(new File(string(params, "snapshot")))));
+        this.handlers.put("metrics", params -> tickMonitor.sample());
+    }
+
+    JsonElement handle(String method, JsonObject params) throws Exception {
+        Handler handler = this.handlers.get(method);
+        if (handler == null) {
+            throw new IllegalArgumentException("Unknown method: " + method);
+        }
+        return handler.handle(params);
+    }
+
+    /** Dispatches a console command, answered once it ran. */
+    private JsonElement execute(JsonObject params) {
+        String command = string(params, "command");
+        return new JsonPrimitive(Bukkit.dispatchCommand(Bukkit.getConsoleSender(), command));
+    }
+
+    private JsonElement player(JsonObject params) {
+        Player player = onlinePlayer(params);
+        Location location = player.getLocation();
+
+        JsonObject result = new JsonObject();
+        result.addProperty("name", player.getName());
+        result.addProperty("uuid", player.getUniqueId().toString());
+        result.addProperty("op", player.isOp());
+        result.addProperty("gameMode", player.getGameMode().name().toLowerCase());
+        result.addProperty("health", player.getHealth());
+        result.addProperty("foodLevel", player.getFoodLevel());
+        result.addProperty("world", location.getWorld() != null ? location.getWorld().getName() : null);
+        result.addProperty("x", location.getX());
+        result.addProperty("y", location.getY());
+        result.addProperty("z", location.getZ());
+        return result;
+    }
+
+    private JsonElement inventory(JsonObject params) {
+        PlayerInventory inventory = onlinePlayer(params).getInventory();
+
+        JsonArray items = new JsonArray();
+        ItemStack[] contents = inventory.getContents();
+        for (int slot = 0; slot < contents.length; slot++) {
+            ItemStack item = contents[slot];
+            if (item == null || item.getType().isAir()) {
+                continue;
+            }
+
+            JsonObject entry = new JsonObject();
+            entry.addProperty("slot", slot);
+            entry.addProperty("type", item.getType().getKey().toString());
+            entry.addProperty("amount", item.getAmount());
+            ItemMeta meta = item.getItemMeta();
+            if (meta != null && meta.hasDisplayName()) {
+                entry.addProperty("displayName", meta.getDisplayName());
+            }
+            if (meta != null && meta.hasLore()) {
+                entry.add("lore", GSON.toJsonTree(meta.getLore()));
+            }
+            items.add(entry);
+        }
+        return items;
+    }
+
+    private JsonElement hasPermission(JsonObject params) {
+        return new JsonPrimitive(onlinePlayer(params).hasPermission(string(params, "permission")));
+    }
+
+    /**
+     * Balance from the economy registered with Vault. Vault is looked up reflectively,
+     * so the agent works on servers without it.
+     */
+    private JsonElement balance(JsonObject params) throws Exception {
+        Class<?> economyClass;
+        try {
+            economyClass = Class.forName("net.milkbowl.vault.economy.Economy");
+        } catch (ClassNotFoundException e) {
+            throw new IllegalStateException("Vault is not installed");
+        }
+
+        RegisteredServiceProvider<?> registration = Bukkit.getServicesManager().getRegistration(economyClass);
+        if (registration == null) {
+            throw new IllegalStateException("No economy plugin is registered with Vault");
+        }
+
+        @SuppressWarnings("deprecation") // offline players are looked up by name in tests
+        OfflinePlayer player = Bukkit.getOfflinePlayer(string(params, "player"));
+        Object balance = economyClass.getMethod("getBalance", OfflinePlayer.class).invoke(registration.getProvider(), player);
+        return new JsonPrimitive((Number) balance);
+    }
+
+    /**
+     * Value at {@code path} of a plugin's config. With {@code file} the YAML file is read from the
+     * plugin's data folder, as stored on disk, which also covers plugins not using {@code getConfig()}.
+     */
+    private JsonElement config(JsonObject params) {
+        String pluginName = string(params, "plugin");
+        Plugin plugin = Bukkit.getPluginManager().getPlugin(pluginName);
+        if (plugin == null) {
+            throw new IllegalArgumentException("Plugin " + pluginName + " is not loaded");
+        }
+
+        FileConfiguration config;
+        if (params.has("file")) {
+            File file = new File(plugin.getDataFolder(), string(params, "file"));
+            if (!file.isFile()) {
+                throw new IllegalArgumentException("File " + file.getPath() + " does not exist");
+            }
+            config = YamlConfiguration.loadConfiguration(file);
+        } else {
+            config = plugin.getConfig();
+        }
+
+        String path = params.has("path") ? string(params, "path") : "";
+        return toJson(path.isEmpty() ? config : config.get(path));
+    }
+
+    /**
+     * Replaces the jar {@code file} in the plugins folder with {@code source} and reloads the plugin in place.
+     */
+    private JsonElement reloadPlugin(JsonObject params) throws Exception {
+        File target = new File(this.pluginsFolder, new File(string(params, "file")).getName());
+        return new JsonPrimitive(this.reloader.reload(target, new File(string(params, "source"))));
+    }
+
+    private JsonElement onlinePlayers(JsonObject params) {
+        JsonArray names = new JsonArray();
+        Bukkit.getOnlinePlayers().forEach(player -> names.add(player.getName()));
+        return names;
+    }
+
+    private static JsonElement toJson(Object value) {
+        if (value instanceof ConfigurationSection) {
+            JsonObject object = new JsonObject();
+            ((ConfigurationSection) value).getValues(false).forEach((key, child) -> object.add(key, toJson(child)));
+            return object;
+        }
+        if (value instanceof Map) {
+            JsonObject object = new JsonObject();
+            ((Map<?, ?>) value).forEach((key, child) -> object.add(String.valueOf(key), toJson(child)));
+            return object;
+        }
+        if (value instanceof List) {
+            JsonArray array = new JsonArray();
+            ((List<?>) value).forEach(element -> array.add(toJson(element)));
+            return array;
+        }
+        if (value == null || value instanceof String || value instanceof Number || value instanceof Boolean) {
+            return GSON.toJsonTree(value);
+        }
+        // serializable objects like item stacks, there is no general JSON form for them
+        return new JsonPrimitive(String.valueOf(value));
+    }
+
+    private static Player onlinePlayer(JsonObject params) {
+        String name = string(params, "player");
+        Player player = Bukkit.getPlayerExact(name);
+        if (player == null) {
+            throw new IllegalArgumentException("Player " + name + " is not online");
+        }
+        return player;
+    }
+
+    private static String string(JsonObject params, String key) {
+        JsonElement value = params.get(key);
+        if (value == null || value.isJsonNull()) {
+            throw new IllegalArgumentException("Missing parameter: " + key);
+        }
+        return value.getAsString();
+    }
+}
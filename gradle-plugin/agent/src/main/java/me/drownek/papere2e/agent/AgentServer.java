@@ -0,0 +1,141 @@
+package me.drownek.papere2e.agent;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.bukkit.Bukkit;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+
+/**
+ * Loopback socket speaking newline-delimited JSON.
+ * <p>
+ * Requests look like {@code {"id":1,"method":"execute","params":{...}}}, every request is answered
+ * with {@code {"id":1,"result":...}} or {@code {"id":1,"error":"..."}} once it ran on the main thread.
+ * Answers may arrive out of order, the runner matches them by id.
+ */
+class AgentServer implements Closeable {
+
+    private static final Gson GSON = new Gson();
+
+    private final PaperE2EAgent plugin;
+    private final AgentHandlers handlers;
+    private final ServerSocket serverSocket;
+    private final Set<Socket> connections = ConcurrentHashMap.newKeySet();
+
+    AgentServer(PaperE2EAgent plugin, AgentHandlers handlers, int port) throws IOException {
+        this.plugin = plugin;
+        this.handlers = handlers;
+        this.serverSocket = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+    }
+
+    void start() {
+        Thread acceptor = new Thread(this::acceptLoop, "PaperE2EAgent-accept");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    private void acceptLoop() {
+        while (!this.serverSocket.isClosed()) {
+            try {
+                Socket socket = this.serverSocket.accept();
+                socket.setTcpNoDelay(true);
+                this.connections.add(socket);
+
+                Thread reader = new Thread(() -> this.serve(socket), "PaperE2EAgent-connection");
+                reader.setDaemon(true);
+                reader.start();
+            } catch (IOException e) {
+                if (!this.serverSocket.isClosed()) {
+                    this.plugin.getLogger().log(Level.WARNING, "Failed to accept connection", e);
+                }
+            }
+        }
+    }
+
+    private void serve(Socket socket) {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+             Writer writer = new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.trim().isEmpty()) {
+                    continue;
+                }
+                this.handle(line, writer);
+            }
+        } catch (IOException e) {
+            // runner went away, nothing to answer anymore
+        } finally {
+            this.connections.remove(socket);
+        }
+    }
+
+    @SuppressWarnings("deprecation") // JsonParser.parseString doesn't exist in the Gson of older servers
+    private void handle(String line, Writer writer) {
+        JsonElement id = null;
+        try {
+            JsonObject request = new JsonParser().parse(line).getAsJsonObject();
+            id = request.get("id");
+            String method = request.get("method").getAsString();
+            JsonObject params = request.has("params") ? request.getAsJsonObject("params") : new JsonObject();
+
+            JsonElement requestId = id;
+            // Bukkit state may only be touched on the main thread, answers are sent from there
+            Bukkit.getScheduler().runTask(this.plugin, () -> {
+                JsonObject response = new JsonObject();
+                response.add("id", requestId);
+                try {
+                    response.add("result", this.handlers.handle(method, params));
+                } catch (Exception e) {
+                    response.addProperty("error", e.getMessage() != null ? e.getMessage() : e.getClass().getName());
+                }
+                this.send(writer, response);
+            });
+        } catch (RuntimeException e) {
+            JsonObject response = new JsonObject();
+            response.add("id", id);
+            response.addProperty("error", "Malformed request: " + e.getMessage());
+            this.send(writer, response);
+        }
+    }
+
+    private void send(Writer writer, JsonObject response) {
+        synchronized (writer) {
+            try {
+                writer.write(GSON.toJson(response));
+                writer.write('\n');
+                writer.flush();
+            } catch (IOException e) {
+                // connection closed while the request ran
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            this.serverSocket.close();
+        } catch (IOException ignored) {
+        }
+        for (Socket socket : this.connections) {
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+            }
+        }
+        this.connections.clear();
+    }
+}
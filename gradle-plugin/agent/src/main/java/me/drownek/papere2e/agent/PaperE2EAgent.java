@@ -0,0 +1,46 @@
+package me.drownek.papere2e.agent;
+
+import org.bukkit.plugin.java.JavaPlugin;
+
+import java.io.IOException;
+
+/**
+ * Test agent installed by the paper-e2e Gradle plugin.
+ * <p>
+ * The runner passes {@code -Dpaper.e2e.agent.port=<port>} when starting the server, the agent
+ * then answers commands and state queries on that port. Without the property it stays idle.
+ */
+public class PaperE2EAgent extends JavaPlugin {
+
+    public static final String PORT_PROPERTY = "paper.e2e.agent.port";
+
+    private AgentServer server;
+
+    @Override
+    public void onEnable() {
+        String port = System.getProperty(PORT_PROPERTY);
+        if (port == null) {
+            getLogger().info("No " + PORT_PROPERTY + " set, agent disabled");
+            return;
+        }
+
+        TickMonitor tickMonitor = new TickMonitor();
+        tickMonitor.start(this);
+
+        try {
+            this.server = new AgentServer(this, new AgentHandlers(this, tickMonitor), Integer.parseInt(port));
+            this.server.start();
+            getLogger().info("Listening on 127.0.0.1:" + port);
+        } catch (IOException | NumberFormatException e) {
+            getLogger().severe("Could not start agent on port " + port + ": " + e.getMessage());
+        }
+    }
+
+    @Override
+    public void onDisable() {
+        if (this.server != null) {
+            this.server.close();
+            this.server = null;
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package me.drownek.papere2e.agent;
+
+import org.bukkit.Bukkit;
+import org.bukkit.command.Command;
+import org.bukkit.command.PluginIdentifiableCommand;
+import org.bukkit.command.SimpleCommandMap;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.plugin.PluginManager;
+import org.bukkit.plugin.java.JavaPlugin;
+
+import java.io.Closeable;
+import java.io.File;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Swaps the jar of a loaded plugin, or reloads all plugins, without restarting the server.
+ * <p>
+ * Bukkit has no API for unloading a plugin, so its registrations are removed from the plugin
+ * manager and command map reflectively. Anything that fails throws, the runner restarts the
+ * server instead then.
+ */
+class PluginReloader {
+
+    @FunctionalInterface
+    interface Action {
+        void run() throws Exception;
+    }
+
+    /**
+     * Unloads the plugin loaded from {@code target}, replaces the jar with {@code source}
+     * and loads and enables it again. Returns the name of the reloaded plugin.
+     */
+    String reload(File target, File source) throws Exception {
+        Plugin plugin = findLoadedFrom(target);
+        if (plugin == null) {
+            throw new IllegalArgumentException("No plugin is loaded from " + target.getName());
+        }
+
+        unload(plugin);
+        Files.copy(source.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+
+        Plugin reloaded = load(target);
+        Bukkit.getPluginManager().enablePlugin(reloaded);
+        syncCommands();
+        return reloaded.getName();
+    }
+
+    /**
+     * Unloads every plugin but {@code keep}, runs {@code whileUnloaded} and loads them again from
+     * their jars, in the order they were loaded before so dependencies come first.
+     * Returns the names of the reloaded plugins.
+     */
+    List<String> reloadAll(Plugin keep, Action whileUnloaded) throws Exception {
+        List<Plugin> plugins = new ArrayList<>();
+        List<File> jars = new ArrayList<>();
+        for (Plugin plugin : Bukkit.getPluginManager().getPlugins()) {
+            if (plugin != keep && plugin instanceof JavaPlugin) {
+                plugins.add(plugin);
+                jars.add(fileOf(plugin));
+            }
+        }
+
+        // dependents go first, they may still use their dependencies while disabling
+        for (int i = plugins.size() - 1; i >= 0; i--) {
+            unload(plugins.get(i));
+        }
+        whileUnloaded.run();
+
+        List<Plugin> reloaded = new ArrayList<>();
+        for (File jar : jars) {
+            reloaded.add(load(jar));
+        }
+        List<String> names = new ArrayList<>();
+        for (Plugin plugin : reloaded) {
+            Bukkit.getPluginManager().enablePlugin(plugin);
+            names.add(plugin.getName());
+        }
+        syncCommands();
+        return names;
+    }
+
+    private static void unload(Plugin plugin) throws Exception {
+        PluginManager pluginManager = Bukkit.getPluginManager();
+        pluginManager.disablePlugin(plugin);
+        unregisterCommands(plugin);
+        forget(pluginManager, plugin);
+        // the jar stays locked on Windows while its class loader is open
+        if (plugin.getClass().getClassLoader() instanceof Closeable) {
+            ((Closeable) plugin.getClass().getClassLoader()).close();
+        }
+    }
+
+    private static Plugin load(File jar) throws Exception {
+        Plugin plugin = Bukkit.getPluginManager().loadPlugin(jar);
+        if (plugin == null) {
+            throw new IllegalStateException("Server refused to load " + jar.getName());
+        }
+        plugin.onLoad();
+        return plugin;
+    }
+
+    private static File fileOf(Plugin plugin) throws Exception {
+        Method getFile = JavaPlugin.class.getDeclaredMethod("getFile");
+        getFile.setAccessible(true);
+        return (File) getFile.invoke(plugin);
+    }
+
+    private static Plugin findLoadedFrom(File target) throws Exception {
+        for (Plugin plugin : Bukkit.getPluginManager().getPlugins()) {
+            if (plugin instanceof JavaPlugin && target.getCanonicalFile().equals(fileOf(plugin).getCanonicalFile())) {
+                return plugin;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Removes the plugin from the lists the manager looks plugins up in. Since Paper 1.19.4 these
+     * live in the instance manager of the Paper plugin manager, older servers keep them in
+     * {@code SimplePluginManager} itself.
+     */
+    private static void forget(PluginManager pluginManager, Plugin plugin) throws Exception {
+        Object holder = pluginManager;
+        Object paperManager = readField(pluginManager, "paperPluginManager");
+        if (paperManager != null) {
+            holder = readField(paperManager, "instanceManager");
+        }
+        Collection<?> plugins = holder != null ? (Collection<?>) readField(holder, "plugins") : null;
+        Map<?, ?> lookupNames = holder != null ? (Map<?, ?>) readField(holder, "lookupNames") : null;
+        if (plugins == null || lookupNames == null) {
+            throw new IllegalStateException("Unsupported plugin manager: " + pluginManager.getClass().getName());
+        }
+
+        plugins.remove(plugin);
+        lookupNames.values().removeIf(value -> value == plugin);
+    }
+
+    private static void unregisterCommands(Plugin plugin) throws Exception {
+        SimpleCommandMap commandMap = (SimpleCommandMap) Bukkit.getServer().getClass().getMethod("getCommandMap").invoke(Bukkit.getServer());
+        @SuppressWarnings("unchecked")
+        Map<String, Command> knownCommands = (Map<String, Command>) readField(commandMap, "knownCommands");
+        knownCommands.values().removeIf(command -> {
+            boolean owned = command instanceof PluginIdentifiableCommand && ((PluginIdentifiableCommand) command).getPlugin() == plugin;
+            if (owned) {
+                command.unregister(commandMap);
+            }
+            return owned;
+        });
+    }
+
+    /** Sends the new command tree to online players, only exists on newer servers. */
+    private static void syncCommands() {
+        try {
+            Bukkit.getServer().getClass().getMethod("syncCommands").invoke(Bukkit.getServer());
+        } catch (ReflectiveOperationException ignored) {
+        }
+    }
+
+    private static Object readField(Object owner, String name) throws IllegalAccessException {
+        for (Class<?> type = owner.getClass(); type != null; type = type.getSuperclass()) {
+            try {
+                Field field = type.getDeclaredField(name);
+                field.setAccessible(true);
+                return field.get(owner);
+            } catch (NoSuchFieldException ignored) {
+            }
+        }
+        return null;
+    }
+}
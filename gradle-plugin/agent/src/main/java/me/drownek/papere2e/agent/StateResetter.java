@@ -0,0 +1,130 @@
+package me.drownek.papere2e.agent;
+
+import org.bukkit.Bukkit;
+import org.bukkit.World;
+import org.bukkit.plugin.Plugin;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Puts plugin data and player data back into the state of the snapshot the runner took of the
+ * run dir, without restarting the server.
+ * <p>
+ * Plugins are unloaded while their data folders are replaced and loaded again afterwards, player
+ * data is read when a player joins. Worlds stay as they are, loaded chunks can't be swapped under
+ * a running server.
+ */
+class StateResetter {
+
+    /** Per-player files below a world folder. */
+    private static final List<String> PLAYER_DATA = Arrays.asList("playerdata", "advancements", "stats");
+
+    private final Plugin agent;
+    private final PluginReloader reloader;
+    private final File pluginsFolder;
+
+    StateResetter(Plugin agent, PluginReloader reloader) {
+        this.agent = agent;
+        this.reloader = reloader;
+        this.pluginsFolder = agent.getDataFolder().getParentFile();
+    }
+
+    /**
+     * Restores from the snapshot dir {@code snapshot}, mirroring the run dir.
+     * Returns the names of the reloaded plugins.
+     */
+    List<String> reset(File snapshot) throws Exception {
+        if (!snapshot.isDirectory()) {
+            throw new IllegalArgumentException("Snapshot " + snapshot + " does not exist");
+        }
+        // they would save their data over the restored one when leaving
+        if (!Bukkit.getOnlinePlayers().isEmpty()) {
+            throw new IllegalStateException(Bukkit.getOnlinePlayers().size() + " player(s) are still online");
+        }
+
+        return this.reloader.reloadAll(this.agent, () -> {
+            this.restorePluginData(new File(snapshot, this.pluginsFolder.getName()));
+            for (World world : Bukkit.getWorlds()) {
+                File worldFolder = world.getWorldFolder();
+                for (String name : PLAYER_DATA) {
+                    restoreTree(new File(new File(snapshot, worldFolder.getName()), name).toPath(), new File(worldFolder, name).toPath());
+                }
+            }
+        });
+    }
+
+    /** Replaces everything in the plugins folder but the jars and the agent's own data. */
+    private void restorePluginData(File snapshotPlugins) throws IOException {
+        File[] current = this.pluginsFolder.listFiles();
+        for (File entry : current != null ? current : new File[0]) {
+            if (this.isPluginData(entry)) {
+                deleteTree(entry.toPath());
+            }
+        }
+
+        File[] saved = snapshotPlugins.listFiles();
+        for (File entry : saved != null ? saved : new File[0]) {
+            if (this.isPluginData(entry)) {
+                copyTree(entry.toPath(), new File(this.pluginsFolder, entry.getName()).toPath());
+            }
+        }
+    }
+
+    private boolean isPluginData(File entry) {
+        return !entry.getName().endsWith(".jar") && !entry.getName().equals(this.agent.getDataFolder().getName());
+    }
+
+    private static void restoreTree(Path source, Path target) throws IOException {
+        deleteTree(target);
+        if (Files.exists(source)) {
+            copyTree(source, target);
+        }
+    }
+
+    private static void copyTree(Path source, Path target) throws IOException {
+        Files.walkFileTree(source, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                Files.createDirectories(target.resolve(source.relativize(dir).toString()));
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                Files.copy(file, target.resolve(source.relativize(file).toString()), StandardCopyOption.REPLACE_EXISTING);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    private static void deleteTree(Path path) throws IOException {
+        if (!Files.exists(path)) {
+            return;
+        }
+        Files.walkFileTree(path, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                Files.delete(file);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path dir, IOException exc) throws IOException {
+                if (exc != null) {
+                    throw exc;
+                }
+                Files.delete(dir);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+}
@@ -0,0 +1,114 @@
+package me.drownek.papere2e.agent;
+
+import com.google.gson.JsonObject;
+import org.bukkit.Bukkit;
+import org.bukkit.event.Event;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.plugin.Plugin;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryUsage;
+import java.lang.reflect.Method;
+
+/**
+ * Collects tick durations between two {@link #sample()} calls.
+ * <p>
+ * On Paper every tick reports its own duration through {@code ServerTickEndEvent}. Elsewhere the
+ * interval between two runs of a task scheduled every tick is used instead, which includes the
+ * time the server slept, so it never drops below 50ms.
+ * All methods run on the main thread.
+ */
+class TickMonitor implements Listener {
+
+    private static final String TICK_END_EVENT = "com.destroystokyo.paper.event.server.ServerTickEndEvent";
+
+    private boolean exact;
+    private long windowStart;
+    private long lastTick;
+    private int ticks;
+    private double totalMillis;
+    private double maxMillis;
+    private long gcCount;
+    private long gcMillis;
+
+    void start(Plugin plugin) {
+        long[] gc = gcTotals();
+        this.gcCount = gc[0];
+        this.gcMillis = gc[1];
+        this.windowStart = System.nanoTime();
+
+        try {
+            @SuppressWarnings("unchecked")
+            Class<? extends Event> eventClass = (Class<? extends Event>) Class.forName(TICK_END_EVENT);
+            Method duration = eventClass.getMethod("getTickDuration");
+            Bukkit.getPluginManager().registerEvent(eventClass, this, EventPriority.MONITOR, (listener, event) -> {
+                if (!eventClass.isInstance(event)) {
+                    return;
+                }
+                try {
+                    record(((Number) duration.invoke(event)).doubleValue());
+                } catch (ReflectiveOperationException ignored) {
+                    // the method was found above, it doesn't fail afterwards
+                }
+            }, plugin);
+            this.exact = true;
+        } catch (ClassNotFoundException | NoSuchMethodException e) {
+            this.lastTick = System.nanoTime();
+            Bukkit.getScheduler().runTaskTimer(plugin, () -> {
+                long now = System.nanoTime();
+                record((now - this.lastTick) / 1_000_000.0);
+                this.lastTick = now;
+            }, 1L, 1L);
+        }
+    }
+
+    private void record(double millis) {
+        this.ticks++;
+        this.totalMillis += millis;
+        this.maxMillis = Math.max(this.maxMillis, millis);
+    }
+
+    /**
+     * Tick and JVM statistics since the previous sample, the window starts over afterwards.
+     */
+    JsonObject sample() {
+        long now = System.nanoTime();
+        double elapsedMillis = (now - this.windowStart) / 1_000_000.0;
+        MemoryUsage heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+        long[] gc = gcTotals();
+
+        JsonObject result = new JsonObject();
+        result.addProperty("exact", this.exact);
+        result.addProperty("elapsedMs", elapsedMillis);
+        result.addProperty("ticks", this.ticks);
+        result.addProperty("avgMspt", this.ticks > 0 ? this.totalMillis / this.ticks : 0);
+        result.addProperty("maxMspt", this.maxMillis);
+        result.addProperty("tps", elapsedMillis > 0 ? Math.min(20.0, this.ticks * 1000.0 / elapsedMillis) : 20.0);
+        result.addProperty("heapUsedMb", heap.getUsed() / (1024.0 * 1024.0));
+        result.addProperty("heapMaxMb", heap.getMax() / (1024.0 * 1024.0));
+        result.addProperty("gcCount", gc[0] - this.gcCount);
+        result.addProperty("gcMs", gc[1] - this.gcMillis);
+
+        this.windowStart = now;
+        this.ticks = 0;
+        this.totalMillis = 0;
+        this.maxMillis = 0;
+        this.gcCount = gc[0];
+        this.gcMillis = gc[1];
+        return result;
+    }
+
+    /** Collections and milliseconds spent collecting, summed over all collectors. */
+    private static long[] gcTotals() {
+        long count = 0;
+        long millis = 0;
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            // -1 when a collector doesn't report it
+            count += Math.max(0, collector.getCollectionCount());
+            millis += Math.max(0, collector.getCollectionTime());
+        }
+        return new long[]{count, millis};
+    }
+}
@@ -12,10 +12,25 @@ repositories {
     mavenCentral()
 }
 
+// Jar of the server-side test agent, bundled as a resource and installed by testE2E
+val agentJar: Configuration by configurations.creating {
+    isCanBeConsumed = false
+    isCanBeResolved = true
+}
+
 dependencies {
+    agentJar(project(":agent"))
     implementation(gradleApi())
     implementation("com.google.code.gson:gson:2.10.1")
     implementation("org.yaml:snakeyaml:2.0")
+
+    testImplementation(platform("org.junit:junit-bom:5.10.2"))
+    testImplementation("org.junit.jupiter:junit-jupiter")
+    testRuntimeOnly("org.junit.platform:junit-platform-launcher")
+}
+
+tasks.test {
+    useJUnitPlatform()
 }
 
 gradlePlugin {
@@ -49,6 +64,13 @@ val generateVersionResource = tasks.register("generateVersionResource") {
     }
 }
 
+val bundleAgent = tasks.register<Copy>("bundleAgent") {
+    from(agentJar)
+    into(layout.buildDirectory.dir("generated/agent-resource"))
+    rename { "paper-e2e-agent.jar" }
+}
+
 sourceSets.named("main") {
     resources.srcDir(generateVersionResource.map { it.outputs.files.singleFile.parentFile })
+    resources.srcDir(bundleAgent)
 }
@@ -1 +1,3 @@
 rootProject.name = "paper-e2e-gradle-plugin"
+
+include("agent")
@@ -0,0 +1,228 @@
+package me.drownek.papere2e
+
+import org.gradle.api.GradleException
+import org.gradle.api.logging.Logger
+import java.io.File
+import java.io.FileOutputStream
+import java.io.OutputStream
+import java.net.URI
+import java.net.http.HttpClient
+import java.net.http.HttpRequest
+import java.net.http.HttpResponse
+import java.nio.channels.FileChannel
+import java.nio.file.Files
+import java.nio.file.StandardCopyOption
+import java.nio.file.StandardOpenOption
+import java.security.DigestInputStream
+import java.security.MessageDigest
+import java.time.Duration
+import java.util.Properties
+import java.util.concurrent.ConcurrentHashMap
+
+/**
+ * Content-addressed store for downloaded artifacts, shared by all projects using the plugin.
+ *
+ * Files live in `sha256/` named by their SHA-256, `records/` remembers what a URL or a
+ * Paper version resolved to, so once the cache is warm no network access is needed.
+ */
+internal class ArtifactCache(
+    private val root: File,
+    private val httpClient: HttpClient,
+    private val offline: Boolean,
+    private val logger: Logger
+) {
+    private val blobsDir = File(root, "sha256")
+    private val recordsDir = File(root, "records")
+    private val tmpDir = File(root, "tmp")
+
+    /**
+     * Returns the cached file downloaded from [url], downloading it first if needed.
+     * With [expectedSha256] the download is verified, and a cache hit never touches the network.
+     * Other cache hits are revalidated with the ETag / Last-Modified the server sent.
+     */
+    fun fetch(url: String, expectedSha256: String? = null): File {
+        val pinned = expectedSha256?.lowercase()
+        if (pinned != null && blob(pinned).isFile) {
+            logger.info("Using cached $url ($pinned)")
+            return blob(pinned)
+        }
+
+        val record = cachedRecord(url, pinned)
+        if (offline) {
+            if (record != null) {
+                return blob(record.getProperty("sha256"))
+            }
+            throw GradleException("$url is not cached and Gradle runs offline. Run once without --offline to fill the cache in $root")
+        }
+
+        return try {
+            locked(urlKey(url)) {
+                // another build may have finished the same download while this one waited
+                if (pinned != null && blob(pinned).isFile) blob(pinned) else download(url, pinned, cachedRecord(url, pinned))
+            }
+        } catch (e: Exception) {
+            if (record == null) throw e
+            // keep working with what we have when the server can't be reached
+            logger.warn("Could not revalidate $url, using cached copy: ${e.message}")
+            blob(record.getProperty("sha256"))
+        }
+    }
+
+    /** The record of an unpinned [url] whose file is still in the cache. */
+    private fun cachedRecord(url: String, pinned: String?): Properties? =
+        readRecord(urlKey(url))?.takeIf { pinned == null && blob(it.getProperty("sha256")).isFile }
+
+    fun readRecord(key: String): Properties? {
+        val file = File(recordsDir, "$key.properties")
+        if (!file.isFile) return null
+        return Properties().apply { file.inputStream().use { load(it) } }
+    }
+
+    fun writeRecord(key: String, record: Properties) {
+        writeProperties(File(recordsDir, "$key.properties"), record)
+    }
+
+    /**
+     * Runs [action] holding the lock of [key], which keeps other builds sharing the cache
+     * from writing into the same `.part` file.
+     */
+    private fun <T> locked(key: String, action: () -> T): T {
+        tmpDir.mkdirs()
+        val lockFile = File(tmpDir, "${key.substringAfter('/')}.lock")
+        // file locks belong to the whole JVM, builds running in the same daemon wait on the monitor instead
+        synchronized(heldLocks.computeIfAbsent(lockFile.absolutePath) { Any() }) {
+            FileChannel.open(lockFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE).use { channel ->
+                channel.lock().use { return action() }
+            }
+        }
+    }
+
+    /**
+     * Downloads [url] into a `.part` file next to the cache, which is kept when the transfer
+     * breaks off so the next attempt resumes it with a range request. A [cached] record makes
+     * the request conditional, a `304 Not Modified` answer returns the cached file as is.
+     * Must hold the lock of the URL.
+     */
+    private fun download(url: String, expectedSha256: String?, cached: Properties?): File {
+        tmpDir.mkdirs()
+        val key = urlKey(url)
+        val part = File(tmpDir, "${key.substringAfter('/')}.part")
+        val partInfo = File(tmpDir, "${key.substringAfter('/')}.part.properties")
+        val partValidator = if (part.isFile && part.length() > 0 && partInfo.isFile) {
+            Properties().apply { partInfo.inputStream().use { load(it) } }.getProperty("validator")
+        } else {
+            null
+        }
+
+        val request = HttpRequest.newBuilder()
+            .uri(URI.create(url))
+            .timeout(Duration.ofMinutes(5))
+            .GET()
+        if (partValidator != null) {
+            // If-Range makes the server send the whole file instead, should it have changed since
+            request.header("Range", "bytes=${part.length()}-")
+            request.header("If-Range", partValidator)
+        } else if (cached != null) {
+            cached.getProperty("etag")?.let { request.header("If-None-Match", it) }
+            cached.getProperty("lastModified")?.let { request.header("If-Modified-Since", it) }
+        }
+
+        val response = httpClient.send(request.build(), HttpResponse.BodyHandlers.ofInputStream())
+        val status = response.statusCode()
+        if (status == 304 && cached != null) {
+            response.body().close()
+            logger.info("Using cached $url, not modified")
+            return blob(cached.getProperty("sha256"))
+        }
+        if (status != 200 && status != 206) {
+            response.body().close()
+            throw RuntimeException("Failed to download $url. Status: $status")
+        }
+
+        val etag = response.headers().firstValue("ETag").orElse(null)
+        val lastModified = response.headers().firstValue("Last-Modified").orElse(null)
+        val resuming = status == 206
+        if (resuming) {
+            val start = response.headers().firstValue("Content-Range").orElse(null)
+                ?.let { CONTENT_RANGE.matchEntire(it.trim()) }
+                ?.groupValues?.get(1)?.toLongOrNull()
+            if (partValidator == null) {
+                response.body().close()
+                throw RuntimeException("Failed to download $url. Got a partial response to a full request")
+            }
+            if (start != part.length()) {
+                // appending anything but the missing bytes would corrupt the file, start over instead
+                response.body().close()
+                logger.warn("Server resumed $url at ${start ?: "an unknown offset"} instead of ${part.length()} bytes, downloading it again")
+                part.delete()
+                partInfo.delete()
+                return download(url, expectedSha256, cached)
+            }
+
+            logger.lifecycle("Resuming $url at ${part.length()} bytes")
+        } else {
+            logger.lifecycle("Downloading $url")
+            (etag ?: lastModified)?.let { validator ->
+                writeProperties(partInfo, Properties().apply { setProperty("validator", validator) })
+            } ?: partInfo.delete()
+        }
+
+        response.body().use { body ->
+            FileOutputStream(part, resuming).use { out -> body.transferTo(out) }
+        }
+
+        // hashed once complete, a resumed file has to be read from the start anyway
+        val sha256 = ArtifactCache.sha256(part)
+        if (expectedSha256 != null && sha256 != expectedSha256) {
+            part.delete()
+            partInfo.delete()
+            throw GradleException("Checksum mismatch for $url: expected $expectedSha256 but downloaded $sha256")
+        }
+
+        val target = blob(sha256)
+        target.parentFile.mkdirs()
+        Files.move(part.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE)
+        partInfo.delete()
+        writeRecord(key, Properties().apply {
+            setProperty("url", url)
+            setProperty("sha256", sha256)
+            etag?.let { setProperty("etag", it) }
+            lastModified?.let { setProperty("lastModified", it) }
+        })
+        return target
+    }
+
+    private fun writeProperties(file: File, properties: Properties) {
+        file.parentFile.mkdirs()
+        // written next to the target and moved, a concurrent build never reads a half written file
+        val temp = Files.createTempFile(file.parentFile.toPath(), file.name, ".tmp")
+        try {
+            Files.newOutputStream(temp).use { properties.store(it, null) }
+            Files.move(temp, file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE)
+        } finally {
+            Files.deleteIfExists(temp)
+        }
+    }
+
+    private fun blob(sha256: String): File = File(blobsDir, "${sha256.take(2)}/$sha256")
+
+    private fun urlKey(url: String): String = "urls/${sha256(url.toByteArray(Charsets.UTF_8))}"
+
+    companion object {
+        private val CONTENT_RANGE = Regex("""bytes (\d+)-\d+/(\d+|\*)""")
+
+        private val heldLocks = ConcurrentHashMap<String, Any>()
+
+        fun sha256(file: File): String {
+            val digest = MessageDigest.getInstance("SHA-256")
+            DigestInputStream(file.inputStream(), digest).use { input ->
+                input.transferTo(OutputStream.nullOutputStream())
+            }
+            return digest.digest().toHex()
+        }
+
+        fun sha256(bytes: ByteArray): String = MessageDigest.getInstance("SHA-256").digest(bytes).toHex()
+
+        private fun ByteArray.toHex(): String = joinToString("") { "%02x".format(it) }
+    }
+}
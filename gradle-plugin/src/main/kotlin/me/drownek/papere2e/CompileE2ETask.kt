@@ -0,0 +1,165 @@
+package me.drownek.papere2e
+
+import com.google.gson.JsonParser
+import org.gradle.api.DefaultTask
+import org.gradle.api.file.ConfigurableFileCollection
+import org.gradle.api.file.DirectoryProperty
+import org.gradle.api.file.FileType
+import org.gradle.api.file.RegularFileProperty
+import org.gradle.api.tasks.*
+import org.gradle.process.ExecOperations
+import org.gradle.work.ChangeType
+import org.gradle.work.Incremental
+import org.gradle.work.InputChanges
+import java.io.File
+import javax.inject.Inject
+
+/**
+ * Compiles TypeScript specs with `tsc --incremental`.
+ *
+ * Gradle skips the task when no spec, `tsconfig.json` or lockfile changed. When it runs, tsc's
+ * build info limits type checking and emitting to what changed since the last compile.
+ * Output of removed specs is deleted, or everything is recompiled when the tsconfig doesn't
+ * tell where that output went.
+ */
+abstract class CompileE2ETask : DefaultTask() {
+
+    @get:Internal
+    abstract val testsDir: DirectoryProperty
+
+    @get:InputFile
+    @get:Optional
+    @get:PathSensitive(PathSensitivity.NONE)
+    abstract val tsconfig: RegularFileProperty
+
+    @get:InputFile
+    @get:Optional
+    @get:PathSensitive(PathSensitivity.NONE)
+    abstract val packageLock: RegularFileProperty
+
+    @get:Incremental
+    @get:InputFiles
+    @get:PathSensitive(PathSensitivity.RELATIVE)
+    abstract val sources: ConfigurableFileCollection
+
+    @get:OutputDirectory
+    abstract val outputDir: DirectoryProperty
+
+    @get:Inject
+    abstract val execOperations: ExecOperations
+
+    init {
+        group = "verification"
+        description = "Compiles the TypeScript E2E specs."
+        onlyIf { tsconfig.isPresent && tsconfig.get().asFile.isFile }
+    }
+
+    @TaskAction
+    fun compile(inputChanges: InputChanges) {
+        val directory = testsDir.get().asFile
+        val outDir = outputDir.get().asFile
+        val buildInfo = File(outDir, ".tsbuildinfo")
+
+        // tsc leaves the output of deleted specs behind, the runner would still pick them up
+        if (inputChanges.isIncremental) {
+            val removed = inputChanges.getFileChanges(sources)
+                .filter { it.changeType == ChangeType.REMOVED && it.fileType == FileType.FILE }
+                .map { it.file }
+            if (removed.isNotEmpty()) {
+                val layout = OutputLayout.read(tsconfig.get().asFile)
+                val stale = removed.map { layout?.outputsOf(it) }
+                if (stale.all { it != null }) {
+                    stale.forEach { outputs -> outputs!!.forEach(File::delete) }
+                } else {
+                    logger.lifecycle("Can't tell where tsc put the output of removed specs, recompiling all of them")
+                    layout?.outDir?.takeUnless { directory.startsWith(it) }?.deleteRecursively()
+                    buildInfo.delete()
+                }
+            }
+        }
+
+        logger.lifecycle("Compiling TypeScript specs...")
+        val isWindows = System.getProperty("os.name").lowercase().contains("win")
+        execOperations.exec {
+            workingDir = directory
+            commandLine(
+                if (isWindows) "npx.cmd" else "npx", "tsc",
+                "-p", tsconfig.get().asFile.absolutePath,
+                "--incremental",
+                "--tsBuildInfoFile", buildInfo.absolutePath
+            )
+        }
+    }
+
+    /**
+     * Where tsc writes the output of a spec, as configured by `compilerOptions` of a tsconfig.
+     *
+     * @property outDir null when tsc emits next to the sources
+     * @property rootDir null when tsc derives it from the common directory of the input files
+     */
+    class OutputLayout(val outDir: File?, val rootDir: File?, private val preserveJsx: Boolean) {
+
+        /**
+         * Files tsc emits for [source]: JavaScript, declarations and their source maps.
+         * Null when they can't be told, because the root tsc derived isn't known.
+         */
+        fun outputsOf(source: File): List<File>? {
+            val name = source.name
+            // declaration files are only type checked
+            if (Regex("""\.d\.(m|c)?ts$""").containsMatchIn(name)) return emptyList()
+
+            val (stem, extension, declaration) = when {
+                name.endsWith(".mts") -> Triple(name.removeSuffix(".mts"), "mjs", "d.mts")
+                name.endsWith(".cts") -> Triple(name.removeSuffix(".cts"), "cjs", "d.cts")
+                name.endsWith(".tsx") -> Triple(name.removeSuffix(".tsx"), if (preserveJsx) "jsx" else "js", "d.ts")
+                name.endsWith(".ts") -> Triple(name.removeSuffix(".ts"), "js", "d.ts")
+                else -> return emptyList()
+            }
+
+            val directory = when {
+                outDir == null -> source.parentFile
+                rootDir == null || !source.startsWith(rootDir) -> return null
+                else -> File(outDir, source.parentFile.relativeTo(rootDir).path)
+            }
+            return listOf("$stem.$extension", "$stem.$extension.map", "$stem.$declaration", "$stem.$declaration.map")
+                .map { File(directory, it) }
+        }
+
+        companion object {
+            /**
+             * Reads the layout of [tsconfig], null when it can't be read or outputs may land elsewhere,
+             * through `extends`, `outFile` or `declarationDir`. Gson parses leniently, so the comments
+             * tsconfig files may contain are fine.
+             */
+            fun read(tsconfig: File): OutputLayout? = try {
+                val config = JsonParser.parseString(tsconfig.readText()).asJsonObject
+                val options = config.getAsJsonObject("compilerOptions")
+                if (config.has("extends") || options?.has("outFile") == true || options?.has("declarationDir") == true) {
+                    null
+                } else {
+                    val base = tsconfig.absoluteFile.parentFile
+                    OutputLayout(
+                        outDir = options?.get("outDir")?.asString?.let { File(base, it).normalize() },
+                        rootDir = options?.get("rootDir")?.asString?.let { File(base, it).normalize() },
+                        preserveJsx = options?.get("jsx")?.asString == "preserve"
+                    )
+                }
+            } catch (e: Exception) {
+                null
+            }
+        }
+    }
+
+    companion object {
+        /**
+         * `compilerOptions.outDir` of [tsconfig], null when tsc emits next to the sources
+         * or the tsconfig can't be read.
+         */
+        fun outDirOf(tsconfig: File): String? = try {
+            JsonParser.parseString(tsconfig.readText()).asJsonObject
+                .getAsJsonObject("compilerOptions")?.get("outDir")?.asString
+        } catch (e: Exception) {
+            null
+        }
+    }
+}
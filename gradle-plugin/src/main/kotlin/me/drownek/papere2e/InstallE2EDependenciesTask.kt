@@ -0,0 +1,70 @@
+package me.drownek.papere2e
+
+import org.gradle.api.DefaultTask
+import org.gradle.api.file.DirectoryProperty
+import org.gradle.api.file.RegularFileProperty
+import org.gradle.api.tasks.*
+import org.gradle.process.ExecOperations
+import java.io.File
+import javax.inject.Inject
+
+/**
+ * Installs the Node.js dependencies of the tests directory.
+ *
+ * The hash of the lockfile the dependencies were installed from is kept in `node_modules`,
+ * so they are only installed again when the lockfile changed, even when Gradle's own
+ * history is gone.
+ */
+abstract class InstallE2EDependenciesTask : DefaultTask() {
+
+    @get:Internal
+    abstract val testsDir: DirectoryProperty
+
+    @get:InputFile
+    @get:Optional
+    @get:PathSensitive(PathSensitivity.NONE)
+    abstract val packageJson: RegularFileProperty
+
+    @get:InputFile
+    @get:Optional
+    @get:PathSensitive(PathSensitivity.NONE)
+    abstract val packageLock: RegularFileProperty
+
+    @get:OutputFile
+    abstract val installedMarker: RegularFileProperty
+
+    @get:Inject
+    abstract val execOperations: ExecOperations
+
+    init {
+        group = "verification"
+        description = "Installs the Node.js dependencies of the E2E tests when their lockfile changed."
+        onlyIf { testsDir.isPresent && testsDir.get().asFile.isDirectory }
+    }
+
+    @TaskAction
+    fun install() {
+        val directory = testsDir.get().asFile
+        val lock = packageLock.orNull?.asFile?.takeIf { it.isFile }
+        val source = lock ?: packageJson.orNull?.asFile?.takeIf { it.isFile } ?: return
+        val hash = TestSelection.hash(source.readBytes())
+
+        val marker = installedMarker.get().asFile
+        if (File(directory, "node_modules").isDirectory && marker.isFile && marker.readText().trim() == hash) {
+            logger.lifecycle("Node.js dependencies are up to date")
+            return
+        }
+
+        // ci installs exactly what the lockfile says and is faster than resolving again
+        val command = if (lock != null) "ci" else "install"
+        logger.lifecycle("Installing Node.js dependencies (npm $command)...")
+        val isWindows = System.getProperty("os.name").lowercase().contains("win")
+        execOperations.exec {
+            workingDir = directory
+            commandLine(if (isWindows) "npm.cmd" else "npm", command)
+        }
+
+        marker.parentFile.mkdirs()
+        marker.writeText(hash)
+    }
+}
@@ -3,6 +3,7 @@ package me.drownek.papere2e
 import org.gradle.api.Project
 import org.gradle.api.file.DirectoryProperty
 import org.gradle.api.provider.ListProperty
+import org.gradle.api.provider.MapProperty
 import org.gradle.api.provider.Property
 import java.io.File
 
@@ -27,6 +28,12 @@ abstract class PaperE2EExtension(project: Project) {
      */
     val minecraftVersion: Property<String> = project.objects.property(String::class.java).convention("1.19.4")
 
+    /**
+     * Paper build to use for [minecraftVersion]. When not set, the latest build is downloaded
+     * and kept until the server jar is removed from the run directory.
+     */
+    val paperBuild: Property<Int> = project.objects.property(Int::class.java)
+
     /**
      * JVM arguments to pass when starting the server.
      */
@@ -36,6 +43,65 @@ abstract class PaperE2EExtension(project: Project) {
         )
     )
 
+    /**
+     * Number of Paper servers running test files in parallel.
+     * Each worker gets a copy of the run directory and its own port, counting up from 25565.
+     * Keep in mind every worker is a separate JVM started with [jvmArgs].
+     */
+    val workers: Property<Int> = project.objects.property(Int::class.java).convention(1)
+
+    /**
+     * Maximum number of `test.concurrent` tests running at the same time on one server.
+     */
+    val testConcurrency: Property<Int> = project.objects.property(Int::class.java).convention(4)
+
+    /**
+     * Number of bots kept connected between tests and handed to the next test after a reset,
+     * instead of logging in a new bot for every test. 0 disables the pool.
+     */
+    val botPoolSize: Property<Int> = project.objects.property(Int::class.java).convention(0)
+
+    /**
+     * How test files are isolated from each other.
+     * - `none`: all files share one server and its state
+     * - `file`: the run directory is snapshotted after the first start, plugin and player data
+     *   are restored by the test agent before every following test file, without a restart
+     * - `restart`: like `file`, but the whole run directory including worlds is restored,
+     *   with a server restart
+     */
+    val isolation: Property<String> = project.objects.property(String::class.java).convention("none")
+
+    /**
+     * Number of chat and console lines kept in memory per test, older lines are dropped.
+     */
+    val captureBufferSize: Property<Int> = project.objects.property(Int::class.java).convention(10000)
+
+    /**
+     * Directory to write the full chat and console log of every test to.
+     * Not set by default, only the last [captureBufferSize] lines are kept then.
+     */
+    val captureSpillDir: DirectoryProperty = project.objects.directoryProperty()
+
+    /**
+     * Whether to install the bundled test agent plugin. It lets the runner execute commands and
+     * query server state (inventories, permissions, balances, config values) over a local socket
+     * instead of reading chat and console output.
+     */
+    val agent: Property<Boolean> = project.objects.property(Boolean::class.java).convention(true)
+
+    /**
+     * Interval in milliseconds at which the agent samples tick times, TPS, heap usage and GC pauses
+     * of the server while tests run. 0 disables sampling.
+     */
+    val metricsInterval: Property<Int> = project.objects.property(Int::class.java).convention(1000)
+
+    /**
+     * Whether `testE2E` only runs the spec files affected by changes since the last run.
+     * Spec files are affected when they changed, failed last time, or sent a command whose
+     * implementation changed. Any other change to the plugin sources runs all spec files.
+     */
+    val incremental: Property<Boolean> = project.objects.property(Boolean::class.java).convention(false)
+
     /**
      * Whether to accept the Minecraft EULA automatically.
      * When true, adds -Dcom.mojang.eula.agree=true to JVM args.
@@ -61,6 +127,17 @@ abstract class PaperE2EExtension(project: Project) {
      */
     val pluginUrls: ListProperty<String> = project.objects.listProperty(String::class.java).convention(emptyList())
 
+    /**
+     * Expected SHA-256 checksums of plugin downloads, keyed by URL.
+     * Internal storage — use url(pluginUrl, sha256) in the downloadPlugins { } DSL block to populate.
+     */
+    val pluginChecksums: MapProperty<String, String> = project.objects.mapProperty(String::class.java, String::class.java).convention(emptyMap())
+
+    /**
+     * Maximum number of plugin and server downloads running at the same time.
+     */
+    val downloadParallelism: Property<Int> = project.objects.property(Int::class.java).convention(4)
+
     /**
      * Whether to use only externally downloaded plugins instead of building the project plugin.
      * When true, the testE2E task will not depend on jar/shadowJar/reobfJar tasks.
@@ -131,7 +208,7 @@ abstract class PaperE2EExtension(project: Project) {
      * ```
      * downloadPlugins {
      *     url("https://example.com/plugin1.jar")
-     *     url("https://example.com/plugin2.jar")
+     *     url("https://example.com/plugin2.jar", "9f86d081884c7d659a2feaa0c55ad015a3bf4f1b2b0b822cd15d6c15b0f00a08")
      * }
      * ```
      */
@@ -139,6 +216,7 @@ abstract class PaperE2EExtension(project: Project) {
         val spec = PluginDownloadSpec()
         action(spec)
         pluginUrls.set(spec.urls)
+        pluginChecksums.set(spec.checksums)
     }
 
     /**
@@ -146,6 +224,7 @@ abstract class PaperE2EExtension(project: Project) {
      */
     class PluginDownloadSpec {
         internal val urls = mutableListOf<String>()
+        internal val checksums = mutableMapOf<String, String>()
 
         /**
          * Add a plugin URL to download.
@@ -153,5 +232,14 @@ abstract class PaperE2EExtension(project: Project) {
         fun url(pluginUrl: String) {
             urls.add(pluginUrl)
         }
+
+        /**
+         * Add a plugin URL to download, verified against its SHA-256 checksum.
+         * Pinned downloads are served from the cache without checking the URL again.
+         */
+        fun url(pluginUrl: String, sha256: String) {
+            urls.add(pluginUrl)
+            checksums[pluginUrl] = sha256
+        }
     }
 }
@@ -56,16 +56,66 @@ class PaperE2EPlugin : Plugin<Project> {
             }
         }
 
-        project.tasks.register("testE2E", TestE2ETask::class.java) {
+        // Files of the tests directory, absent ones stay unset so optional inputs don't fail validation
+        fun testsFile(path: String) = project.layout.file(
+            extension.testsDir.map { dir -> dir.file(path).asFile.takeIf { it.isFile } }
+        )
+
+        val installE2E = project.tasks.register("installE2E", InstallE2EDependenciesTask::class.java) {
+            testsDir.set(extension.testsDir)
+            packageJson.set(testsFile("package.json"))
+            packageLock.set(testsFile("package-lock.json"))
+            installedMarker.set(extension.testsDir.file("node_modules/.paper-e2e-lock.sha256"))
+        }
+
+        val compileE2E = project.tasks.register("compileE2E", CompileE2ETask::class.java) {
+            dependsOn(installE2E)
+            testsDir.set(extension.testsDir)
+            tsconfig.set(testsFile("tsconfig.json"))
+            packageLock.set(testsFile("package-lock.json"))
+            // without an outDir tsc emits next to the specs, only its build info goes to the build directory
+            outputDir.set(extension.testsDir.zip(project.layout.buildDirectory) { dir, buildDir ->
+                CompileE2ETask.outDirOf(dir.file("tsconfig.json").asFile)?.let { dir.dir(it) }
+                    ?: buildDir.dir("paper-e2e/tsc")
+            })
+            sources.from(extension.testsDir.map { dir ->
+                project.fileTree(dir) {
+                    include("**/*.ts", "**/*.tsx", "**/*.mts", "**/*.cts")
+                    exclude("node_modules/**")
+                    CompileE2ETask.outDirOf(dir.file("tsconfig.json").asFile)?.let { exclude("$it/**") }
+                }
+            })
+        }
+
+        val configureE2ETask: TestE2ETask.() -> Unit = {
             // Ensure clean runs before test
             dependsOn(cleanE2E)
+            dependsOn(compileE2E)
 
             testsDir.set(extension.testsDir)
+            specFiles.from(extension.testsDir.map { dir ->
+                project.fileTree(dir) { exclude("node_modules/**") }
+            })
             minecraftVersion.set(extension.minecraftVersion)
             jvmArgs.set(extension.jvmArgs)
             acceptEula.set(extension.acceptEula)
+            workers.set(extension.workers)
+            testConcurrency.set(extension.testConcurrency)
+            isolation.set(extension.isolation)
+            botPoolSize.set(extension.botPoolSize)
+            agent.set(extension.agent)
+            metricsInterval.set(extension.metricsInterval)
+            captureBufferSize.set(extension.captureBufferSize)
+            captureSpillDir.set(extension.captureSpillDir)
+            paperBuild.set(extension.paperBuild)
             pluginUrls.set(extension.pluginUrls)
+            pluginChecksums.set(extension.pluginChecksums)
+            downloadParallelism.set(extension.downloadParallelism)
+            cacheDir.set(project.gradle.gradleUserHomeDir.resolve("caches/paper-e2e"))
+            offline.set(project.gradle.startParameter.isOffline)
             runDirFiles.set(extension.runDirFiles)
+            incremental.set(extension.incremental)
+            projectDirectory.set(project.layout.projectDirectory)
 
             // Support command line properties for filtering
             if (project.hasProperty("testFiles")) {
@@ -97,9 +147,23 @@ class PaperE2EPlugin : Plugin<Project> {
                 if (javaExtension != null && javaToolchains != null) {
                     javaLauncher.set(javaToolchains.launcherFor(javaExtension.toolchain))
                 }
+                if (javaExtension != null) {
+                    pluginSources.from(javaExtension.sourceSets.getByName("main").allSource)
+                }
             }
         }
 
+        project.tasks.register("testE2E", TestE2ETask::class.java) {
+            configureE2ETask()
+        }
+
+        project.tasks.register("devE2E", TestE2ETask::class.java) {
+            configureE2ETask()
+            description = "Runs E2E tests, then keeps the server running and reruns them when the plugin or specs change."
+            devMode.set(true)
+            buildRootDir.set(project.rootDir)
+        }
+
         project.tasks.register("initE2E") {
             group = "verification"
             description = "Interactively initializes a paper-e2e-test environment with required configs and an initial test file."
@@ -225,13 +289,17 @@ class PaperE2EPlugin : Plugin<Project> {
         // when one of our E2E tasks is actually in the task graph.
         project.gradle.taskGraph.whenReady {
             val ours = allTasks.any { task ->
-                task.project === project && (task.name == "testE2E" || task.name == "cleanE2E" || task.name == "initE2E")
+                task.project === project && task.name in setOf("testE2E", "devE2E", "cleanE2E", "initE2E", "installE2E", "compileE2E")
             }
             if (ours) Banner.print(project.logger)
         }
 
         project.afterEvaluate {
-            val testTask = project.tasks.named("testE2E", TestE2ETask::class.java).get()
+            if (extension.incremental.get()) {
+                project.tasks.named("testE2E", TestE2ETask::class.java).configure {
+                    selectionState.set(project.layout.buildDirectory.file("paper-e2e/test-selection.json"))
+                }
+            }
 
             // Only set up plugin jar dependency if not using external plugins only
             if (!extension.useExternalPluginsOnly.get()) {
@@ -243,8 +311,12 @@ class PaperE2EPlugin : Plugin<Project> {
                 }
 
                 if (jarTask.isPresent) {
-                    testTask.dependsOn(jarTask)
-                    testTask.pluginJar.set(jarTask.get().outputs.files.singleFile)
+                    project.tasks.withType(TestE2ETask::class.java).configureEach {
+                        dependsOn(jarTask)
+                        pluginJar.set(jarTask.get().outputs.files.singleFile)
+                        // dev mode keeps rebuilding the jar with a continuous build of this task
+                        rebuildTaskPath.set(jarTask.get().path)
+                    }
                 }
             }
         }
@@ -2,8 +2,12 @@ package me.drownek.papere2e
 
 import com.google.gson.JsonParser
 import org.gradle.api.DefaultTask
+import org.gradle.api.GradleException
+import org.gradle.api.file.ConfigurableFileCollection
 import org.gradle.api.file.DirectoryProperty
+import org.gradle.api.file.RegularFileProperty
 import org.gradle.api.provider.ListProperty
+import org.gradle.api.provider.MapProperty
 import org.gradle.api.provider.Property
 import org.gradle.api.tasks.*
 import org.gradle.jvm.toolchain.JavaLauncher
@@ -15,15 +19,25 @@ import java.net.http.HttpResponse
 import java.nio.file.Files
 import java.nio.file.StandardCopyOption
 import java.time.Duration
+import java.util.Properties
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.CompletionException
+import java.util.concurrent.Executors
 import org.yaml.snakeyaml.Yaml
 import org.yaml.snakeyaml.DumperOptions
 
 abstract class TestE2ETask : DefaultTask() {
 
-    @get:InputDirectory
-    @get:Optional
+    @get:Internal
     abstract val testsDir: DirectoryProperty
 
+    /**
+     * Spec sources and compiled specs, without `node_modules` which is covered by the lockfile.
+     */
+    @get:InputFiles
+    @get:PathSensitive(PathSensitivity.RELATIVE)
+    abstract val specFiles: ConfigurableFileCollection
+
     @get:Input
     abstract val serverJarPath: Property<String>
 
@@ -40,8 +54,76 @@ abstract class TestE2ETask : DefaultTask() {
     abstract val acceptEula: Property<Boolean>
 
     @get:Input
+    abstract val workers: Property<Int>
+
+    @get:Input
+    abstract val testConcurrency: Property<Int>
+
+    @get:Input
+    abstract val isolation: Property<String>
+
+    @get:Input
+    abstract val botPoolSize: Property<Int>
+
+    @get:Input
+    abstract val captureBufferSize: Property<Int>
+
+    @get:Input
+    abstract val agent: Property<Boolean>
+
+    @get:Input
+    abstract val metricsInterval: Property<Int>
+
+    /**
+     * Keeps the server running after the tests, reloading the plugin and rerunning specs on changes.
+     */
+    @get:Input
+    abstract val devMode: Property<Boolean>
+
+    /**
+     * Task building the plugin jar, run as a continuous build next to the server in dev mode.
+     */
+    @get:Input
+    @get:Optional
+    abstract val rebuildTaskPath: Property<String>
+
+    @get:Internal
     @get:Optional
-    abstract val pluginJar: Property<File>
+    abstract val buildRootDir: DirectoryProperty
+
+    /**
+     * Only runs spec files affected by changes since the last run, see [TestSelection].
+     */
+    @get:Input
+    abstract val incremental: Property<Boolean>
+
+    /**
+     * Sources and resources of the plugin under test.
+     */
+    @get:InputFiles
+    @get:PathSensitive(PathSensitivity.RELATIVE)
+    abstract val pluginSources: ConfigurableFileCollection
+
+    @get:Internal
+    abstract val projectDirectory: DirectoryProperty
+
+    /**
+     * What every spec file sent during its last run. Only set with [incremental], it also makes an
+     * unchanged run up to date.
+     */
+    @get:OutputFile
+    @get:Optional
+    abstract val selectionState: RegularFileProperty
+
+    @get:Internal
+    @get:Optional
+    abstract val captureSpillDir: DirectoryProperty
+
+    /** Tracked by content, a rebuilt jar with the same path runs the tests again. */
+    @get:InputFile
+    @get:Optional
+    @get:PathSensitive(PathSensitivity.NAME_ONLY)
+    abstract val pluginJar: RegularFileProperty
 
     @get:Input
     @get:Optional
@@ -55,9 +137,25 @@ abstract class TestE2ETask : DefaultTask() {
     @get:Optional
     abstract val javaLauncher: Property<JavaLauncher>
 
+    @get:Input
+    @get:Optional
+    abstract val paperBuild: Property<Int>
+
     @get:Input
     abstract val pluginUrls: ListProperty<String>
 
+    @get:Input
+    abstract val pluginChecksums: MapProperty<String, String>
+
+    @get:Input
+    abstract val downloadParallelism: Property<Int>
+
+    @get:Internal
+    abstract val cacheDir: DirectoryProperty
+
+    @get:Input
+    abstract val offline: Property<Boolean>
+
     @get:Input
     @get:Optional
     abstract val runDirFiles: ListProperty<PaperE2EExtension.RunDirFile>
@@ -65,6 +163,8 @@ abstract class TestE2ETask : DefaultTask() {
     init {
         group = "verification"
         description = "Run E2E tests for Paper plugin"
+        devMode.convention(false)
+        incremental.convention(false)
     }
 
     @TaskAction
@@ -163,7 +263,7 @@ abstract class TestE2ETask : DefaultTask() {
         
         // Copy the project plugin to the server
         if (pluginJar.isPresent) {
-            val jarFile = pluginJar.get()
+            val jarFile = pluginJar.get().asFile
             if (jarFile.exists()) {
                 logger.lifecycle("Installing plugin: ${jarFile.name}")
                 Files.copy(jarFile.toPath(), File(pluginsDir, jarFile.name).toPath(), StandardCopyOption.REPLACE_EXISTING)
@@ -172,26 +272,44 @@ abstract class TestE2ETask : DefaultTask() {
             }
         }
 
+        installAgent(pluginsDir)
+
+        val httpClient = HttpClient.newBuilder()
+            .followRedirects(HttpClient.Redirect.NORMAL)
+            .connectTimeout(Duration.ofSeconds(30))
+            .build()
+        val cache = ArtifactCache(cacheDir.get().asFile, httpClient, offline.get(), logger)
+
+        val downloads = mutableListOf<() -> Unit>()
+
         // Download additional plugins from URLs
-        val urls = pluginUrls.get()
+        val urls = pluginUrls.get().distinct()
         if (urls.isNotEmpty()) {
-            logger.lifecycle("Downloading ${urls.size} plugin(s)...")
-            val httpClient = HttpClient.newBuilder()
-                .followRedirects(HttpClient.Redirect.NORMAL)
-                .connectTimeout(Duration.ofSeconds(30))
-                .build()
+            logger.lifecycle("Installing ${urls.size} plugin(s)...")
+            val checksums = pluginChecksums.get()
+            val fileNames = urls.associateWith { pluginFileName(it) }
+            val duplicated = fileNames.values.groupingBy { it }.eachCount().filterValues { it > 1 }.keys
             urls.forEach { url ->
-                downloadPlugin(httpClient, url, pluginsDir)
+                // jars of the same name from different URLs would overwrite each other
+                val fileName = fileNames.getValue(url).let { name ->
+                    if (name in duplicated) {
+                        "${name.removeSuffix(".jar")}-${ArtifactCache.sha256(url.toByteArray(Charsets.UTF_8)).take(8)}.jar"
+                    } else {
+                        name
+                    }
+                }
+                downloads.add { downloadPlugin(cache, url, checksums[url], File(pluginsDir, fileName)) }
             }
         }
 
-        // Download Paper server if needed
+        // Download Paper server if needed, a pinned build is always checked against the cache
         val serverJarFile = File(serverJar)
-        if (!serverJarFile.exists()) {
-            logger.lifecycle("Server JAR not found. Downloading Paper server for Minecraft $mcVersion...")
-            downloadPaperServer(mcVersion, serverJarFile)
+        if (paperBuild.isPresent || !serverJarFile.exists()) {
+            downloads.add { installPaperServer(cache, httpClient, mcVersion, paperBuild.orNull, serverJarFile) }
         }
 
+        runDownloads(downloads)
+
         // Check tests directory
         val userTestsDirectory = if (testsDir.isPresent) {
             testsDir.get().asFile
@@ -205,20 +323,8 @@ abstract class TestE2ETask : DefaultTask() {
             return
         }
 
-        // Install dependencies if needed
-        if (!File(userTestsDirectory, "node_modules").exists()) {
-            logger.lifecycle("Installing Node.js dependencies...")
-            runCommand(userTestsDirectory, "npm", "install")
-        }
-
-        // Build TypeScript tests if tsconfig.json exists
+        // Dependencies are installed by installE2E and TypeScript specs compiled by compileE2E
         val tsconfigFile = File(userTestsDirectory, "tsconfig.json")
-        if (tsconfigFile.exists()) {
-            logger.lifecycle("TypeScript config found, compiling tests...")
-            runCommand(userTestsDirectory, "npm", "run", "build")
-        } else {
-            logger.lifecycle("No TypeScript config found, running JavaScript tests directly")
-        }
 
         // Build JVM arguments string for the runner
         val finalJvmArgs = serverArgs.toMutableList()
@@ -240,6 +346,12 @@ abstract class TestE2ETask : DefaultTask() {
         logger.lifecycle("Running E2E tests...")
         logger.lifecycle("Server JAR: $serverJar")
         logger.lifecycle("JVM Args: $jvmArgsString")
+        if (workers.get() > 1) {
+            logger.lifecycle("Workers: ${workers.get()}")
+        }
+        if (isolation.get() !in setOf("none", "file", "restart")) {
+            throw GradleException("Unknown isolation mode '${isolation.get()}', expected 'none', 'file' or 'restart'")
+        }
 
         val envMap = mutableMapOf(
             "SERVER_JAR" to serverJar.trim(),
@@ -247,10 +359,21 @@ abstract class TestE2ETask : DefaultTask() {
             "JAVA_PATH" to javaPath,
             "JVM_ARGS" to jvmArgsString,
             "MC_VERSION" to mcVersion,
+            "WORKERS" to workers.get().toString(),
+            "TEST_CONCURRENCY" to testConcurrency.get().toString(),
+            "ISOLATION" to isolation.get(),
+            "BOT_POOL_SIZE" to botPoolSize.get().toString(),
+            "CAPTURE_BUFFER_SIZE" to captureBufferSize.get().toString(),
+            "PAPER_E2E_AGENT" to agent.get().toString(),
+            "METRICS_INTERVAL" to metricsInterval.get().toString(),
             // The Gradle plugin already printed its banner; don't duplicate it.
             "PAPER_E2E_NO_BANNER" to "1"
         )
 
+        if (captureSpillDir.isPresent) {
+            envMap["CAPTURE_SPILL_DIR"] = captureSpillDir.get().asFile.absolutePath
+        }
+
         if (testFiles.isPresent) {
             val fileFilter = testFiles.get()
             envMap["TEST_FILES"] = fileFilter
@@ -263,123 +386,222 @@ abstract class TestE2ETask : DefaultTask() {
             logger.lifecycle("Test names filter: $nameFilter")
         }
 
-        runCommand(
-            userTestsDirectory, 
-            "node", "node_modules/@drownek/paper-e2e-runner/dist/cli.js",
-            env = envMap
-        )
+        // Explicit filters and dev mode always run what they ask for
+        val selection = if (incremental.get() && selectionState.isPresent && !testFiles.isPresent && !testNames.isPresent && !devMode.get()) {
+            TestSelection(selectionState.get().asFile)
+        } else {
+            null
+        }
+        val specHashes = if (selection != null) findSpecFiles(userTestsDirectory) else emptyMap()
+        // files next to the specs, like shared helpers or the lockfile, are units without commands, so a change runs every spec
+        val sourceScan by lazy { TestSelection.scan(pluginSources.files + findSupportFiles(userTestsDirectory), projectDirectory.get().asFile) }
+        val coverageDir = File(temporaryDir, "coverage")
+        var selected: Set<String> = specHashes.keys
+
+        if (selection != null) {
+            coverageDir.deleteRecursively()
+            envMap["PAPER_E2E_COVERAGE_DIR"] = coverageDir.absolutePath
+
+            val affected = selection.select(specHashes, sourceScan)
+            if (affected == null) {
+                logger.lifecycle("Incremental: running all ${specHashes.size} spec file(s)")
+            } else if (affected.isEmpty()) {
+                logger.lifecycle("Incremental: no spec file is affected by changes since the last run")
+                selection.record(specHashes, emptySet(), coverageDir, sourceScan)
+                return
+            } else {
+                logger.lifecycle("Incremental: running ${affected.size} of ${specHashes.size} spec file(s) affected by changes")
+                selected = affected
+                envMap["PAPER_E2E_SPEC_FILES"] = affected.joinToString(File.pathSeparator) { File(userTestsDirectory, it).absolutePath }
+            }
+        }
+
+        if (devMode.get()) {
+            envMap["DEV_MODE"] = "true"
+            if (pluginJar.isPresent) {
+                envMap["PLUGIN_JAR"] = pluginJar.get().asFile.absolutePath
+            }
+        }
+
+        val watchers = if (devMode.get()) startDevWatchers(userTestsDirectory, tsconfigFile.exists()) else emptyList()
+        try {
+            runCommand(
+                userTestsDirectory,
+                "node", "node_modules/@drownek/paper-e2e-runner/dist/cli.js",
+                env = envMap
+            )
+        } finally {
+            watchers.forEach { killProcessTree(it) }
+            selection?.record(specHashes, selected, coverageDir, sourceScan)
+        }
         
         logger.lifecycle("E2E tests completed successfully")
     }
 
-    private fun downloadPaperServer(version: String, destination: File) {
-        val httpClient = HttpClient.newBuilder().build()
-        
+    /**
+     * Runs the downloads on up to [downloadParallelism] threads and rethrows the first failure
+     * once all of them finished, so no transfer is left writing into the run directory.
+     */
+    private fun runDownloads(downloads: List<() -> Unit>) {
+        if (downloads.isEmpty()) return
+        val executor = Executors.newFixedThreadPool(downloadParallelism.get().coerceIn(1, downloads.size))
         try {
+            val futures = downloads.map { download -> CompletableFuture.runAsync(download, executor) }
+            val failures = futures.mapNotNull { future ->
+                try {
+                    future.join()
+                    null
+                } catch (e: CompletionException) {
+                    e.cause ?: e
+                }
+            }
+            failures.firstOrNull()?.let { failure ->
+                failures.drop(1).forEach { failure.addSuppressed(it) }
+                throw failure
+            }
+        } finally {
+            executor.shutdownNow()
+        }
+    }
+
+    private fun installPaperServer(cache: ArtifactCache, httpClient: HttpClient, version: String, build: Int?, destination: File) {
+        try {
+            val release = resolvePaperRelease(cache, httpClient, version, build)
+            if (destination.isFile && ArtifactCache.sha256(destination) == release.getProperty("sha256")) {
+                return
+            }
+
+            logger.lifecycle("Installing Paper $version build ${release.getProperty("build")}...")
+            val jar = cache.fetch(release.getProperty("url"), release.getProperty("sha256"))
+
+            // Create parent directories if needed
+            destination.parentFile?.mkdirs()
+            Files.copy(jar.toPath(), destination.toPath(), StandardCopyOption.REPLACE_EXISTING)
+
+            logger.lifecycle("Paper server installed to: ${destination.absolutePath}")
+        } catch (e: GradleException) {
+            throw e
+        } catch (e: Exception) {
+            throw RuntimeException("Failed to download Paper server: ${e.message}", e)
+        }
+    }
+
+    /**
+     * Resolves the download URL and SHA-256 of a Paper build, the latest one when [build] is null.
+     * Resolved builds are recorded in the cache, pinned builds and offline runs don't query the API.
+     */
+    private fun resolvePaperRelease(cache: ArtifactCache, httpClient: HttpClient, version: String, build: Int?): Properties {
+        val recordKey = "paper/$version/${build ?: "latest"}"
+        val recorded = cache.readRecord(recordKey)
+        if (recorded != null && (build != null || offline.get())) {
+            return recorded
+        }
+        if (offline.get()) {
+            throw GradleException("Paper $version is not cached and Gradle runs offline. Run once without --offline to fill the cache")
+        }
+
+        val resolvedBuild = build ?: run {
             // Step 1: Get the latest build number for this version
             logger.lifecycle("Fetching latest Paper build for Minecraft $version...")
-            
+
             val versionInfoUrl = "https://api.papermc.io/v2/projects/paper/versions/$version"
             val versionRequest = HttpRequest.newBuilder()
                 .uri(URI.create(versionInfoUrl))
                 .GET()
                 .build()
-            
+
             val versionResponse = httpClient.send(versionRequest, HttpResponse.BodyHandlers.ofString())
-            
+
             if (versionResponse.statusCode() != 200) {
                 throw RuntimeException("Failed to fetch Paper version info. Status: ${versionResponse.statusCode()}. Make sure Minecraft version '$version' is valid.")
             }
-            
+
             val versionJson = JsonParser.parseString(versionResponse.body()).asJsonObject
             val buildsArray = versionJson.getAsJsonArray("builds")
-            
+
             if (buildsArray.size() == 0) {
                 throw RuntimeException("No builds found for Minecraft version $version")
             }
-            
-            val latestBuild = buildsArray.last().asInt
-            logger.lifecycle("Found latest build: $latestBuild")
-            
-            // Step 2: Get the download name for this build
-            val buildInfoUrl = "https://api.papermc.io/v2/projects/paper/versions/$version/builds/$latestBuild"
-            val buildRequest = HttpRequest.newBuilder()
-                .uri(URI.create(buildInfoUrl))
-                .GET()
-                .build()
-            
-            val buildResponse = httpClient.send(buildRequest, HttpResponse.BodyHandlers.ofString())
-            
-            if (buildResponse.statusCode() != 200) {
-                throw RuntimeException("Failed to fetch build info. Status: ${buildResponse.statusCode()}")
-            }
-            
-            val buildJson = JsonParser.parseString(buildResponse.body()).asJsonObject
-            val downloadsJson = buildJson.getAsJsonObject("downloads")
-            val applicationJson = downloadsJson.getAsJsonObject("application")
-            val downloadName = applicationJson.get("name").asString
-            
-            // Step 3: Download the JAR
-            val downloadUrl = "https://api.papermc.io/v2/projects/paper/versions/$version/builds/$latestBuild/downloads/$downloadName"
-            logger.lifecycle("Downloading Paper server from: $downloadUrl")
-            
-            val downloadRequest = HttpRequest.newBuilder()
-                .uri(URI.create(downloadUrl))
-                .GET()
-                .build()
-            
-            val downloadResponse = httpClient.send(downloadRequest, HttpResponse.BodyHandlers.ofInputStream())
-            
-            if (downloadResponse.statusCode() != 200) {
-                throw RuntimeException("Failed to download Paper server. Status: ${downloadResponse.statusCode()}")
-            }
-            
-            // Create parent directories if needed
-            destination.parentFile?.mkdirs()
-            
-            // Save the file
-            Files.copy(downloadResponse.body(), destination.toPath(), StandardCopyOption.REPLACE_EXISTING)
-            
-            logger.lifecycle("Paper server downloaded successfully to: ${destination.absolutePath}")
-            
-        } catch (e: Exception) {
-            throw RuntimeException("Failed to download Paper server: ${e.message}", e)
+
+            buildsArray.last().asInt.also { logger.lifecycle("Found latest build: $it") }
         }
-    }
 
-    private fun downloadPlugin(httpClient: HttpClient, url: String, pluginsDirectory: File) {
-        try {
-            // Extract filename from URL path
-            val uri = URI.create(url)
-            val path = uri.path
-            val fileName = path.substring(path.lastIndexOf('/') + 1)
+        // Step 2: Get the download name and checksum for this build
+        val buildInfoUrl = "https://api.papermc.io/v2/projects/paper/versions/$version/builds/$resolvedBuild"
+        val buildRequest = HttpRequest.newBuilder()
+            .uri(URI.create(buildInfoUrl))
+            .GET()
+            .build()
 
-            if (fileName.isEmpty() || !fileName.endsWith(".jar")) {
-                throw RuntimeException("Invalid plugin URL: $url. The URL path must end with a .jar filename")
-            }
+        val buildResponse = httpClient.send(buildRequest, HttpResponse.BodyHandlers.ofString())
 
-            val destination = File(pluginsDirectory, fileName)
-            if (destination.exists()) {
-                logger.warn("Plugin file already exists and will be overwritten: $fileName")
-            }
+        if (buildResponse.statusCode() != 200) {
+            throw RuntimeException("Failed to fetch build info for Paper $version build $resolvedBuild. Status: ${buildResponse.statusCode()}")
+        }
 
-            logger.lifecycle("Downloading plugin: $fileName from $url")
+        val buildJson = JsonParser.parseString(buildResponse.body()).asJsonObject
+        val applicationJson = buildJson.getAsJsonObject("downloads").getAsJsonObject("application")
+        val downloadName = applicationJson.get("name").asString
 
-            val request = HttpRequest.newBuilder()
-                .uri(uri)
-                .timeout(Duration.ofMinutes(5))
-                .GET()
-                .build()
+        val release = Properties().apply {
+            setProperty("build", resolvedBuild.toString())
+            setProperty("url", "https://api.papermc.io/v2/projects/paper/versions/$version/builds/$resolvedBuild/downloads/$downloadName")
+            setProperty("sha256", applicationJson.get("sha256").asString.lowercase())
+        }
+        cache.writeRecord("paper/$version/$resolvedBuild", release)
+        if (build == null) {
+            cache.writeRecord(recordKey, release)
+        }
+        return release
+    }
 
-            val response = httpClient.send(request, HttpResponse.BodyHandlers.ofInputStream())
+    /**
+     * Copies the bundled agent plugin into the plugins directory, or removes it when disabled.
+     */
+    private fun installAgent(pluginsDirectory: File) {
+        val destination = File(pluginsDirectory, AGENT_JAR)
+        if (!agent.get()) {
+            destination.delete()
+            return
+        }
 
-            if (response.statusCode() != 200) {
-                throw RuntimeException("Failed to download plugin from $url. Status: ${response.statusCode()}")
+        val bundled = TestE2ETask::class.java.getResourceAsStream("/$AGENT_JAR")?.use { it.readBytes() }
+            ?: throw GradleException("$AGENT_JAR is missing from the paper-e2e plugin")
+        if (destination.isFile && destination.readBytes().contentEquals(bundled)) {
+            return
+        }
+        logger.lifecycle("Installing test agent: $AGENT_JAR")
+        destination.writeBytes(bundled)
+    }
+
+    private fun pluginFileName(url: String): String {
+        // Extract filename from URL path
+        val path = URI.create(url).path
+        val fileName = path.substring(path.lastIndexOf('/') + 1)
+
+        if (fileName.isEmpty() || !fileName.endsWith(".jar")) {
+            throw RuntimeException("Invalid plugin URL: $url. The URL path must end with a .jar filename")
+        }
+        return fileName
+    }
+
+    private fun downloadPlugin(cache: ArtifactCache, url: String, sha256: String?, destination: File) {
+        try {
+            if (destination.exists()) {
+                logger.warn("Plugin file already exists and will be overwritten: ${destination.name}")
             }
 
-            Files.copy(response.body(), destination.toPath(), StandardCopyOption.REPLACE_EXISTING)
+            val jar = cache.fetch(url, sha256)
+            // copied next to the destination and moved, downloads running alongside never share a file
+            val temp = Files.createTempFile(destination.parentFile.toPath(), destination.name, ".tmp")
+            try {
+                Files.copy(jar.toPath(), temp, StandardCopyOption.REPLACE_EXISTING)
+                Files.move(temp, destination.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE)
+            } finally {
+                Files.deleteIfExists(temp)
+            }
 
-            logger.lifecycle("Plugin downloaded successfully: $fileName")
+            logger.lifecycle("Plugin installed: ${destination.name}")
 
         } catch (e: RuntimeException) {
             throw e
@@ -487,6 +709,74 @@ abstract class TestE2ETask : DefaultTask() {
         }
     }
 
+    /**
+     * Compiled spec files below [testsDirectory] by their path relative to it, with the hash of their content.
+     * Walks the same files as the runner does.
+     */
+    private fun findSpecFiles(testsDirectory: File): Map<String, String> =
+        testsDirectory.walkTopDown()
+            .onEnter { it == testsDirectory || (it.name != "node_modules" && it.name != ".git") }
+            .filter { it.isFile && it.name.endsWith(".spec.js") }
+            .associate { it.relativeTo(testsDirectory).invariantSeparatorsPath to TestSelection.hash(it.readBytes()) }
+
+    /**
+     * Files below [testsDirectory] the specs may depend on: everything but the specs themselves,
+     * their sources and maps, installed packages and the compiler's incremental state.
+     */
+    private fun findSupportFiles(testsDirectory: File): List<File> =
+        testsDirectory.walkTopDown()
+            .onEnter { it == testsDirectory || (it.name != "node_modules" && it.name != ".git") }
+            .filter { it.isFile && !it.name.contains(".spec.") && it.extension != "tsbuildinfo" }
+            .toList()
+
+    /**
+     * Starts the builds dev mode relies on: a continuous Gradle build of the plugin jar and
+     * the TypeScript compiler in watch mode. Both keep running until the runner exits.
+     */
+    private fun startDevWatchers(testsDirectory: File, typescript: Boolean): List<Process> {
+        val isWindows = System.getProperty("os.name").lowercase().contains("win")
+        val processes = mutableListOf<Process>()
+
+        if (rebuildTaskPath.isPresent && buildRootDir.isPresent) {
+            val rootDirectory = buildRootDir.get().asFile
+            val wrapper = File(rootDirectory, if (isWindows) "gradlew.bat" else "gradlew")
+            if (wrapper.exists()) {
+                logger.lifecycle("Dev mode: rebuilding ${rebuildTaskPath.get()} on changes")
+                processes.add(startBackground(rootDirectory, wrapper.absolutePath, rebuildTaskPath.get(), "--continuous", "--quiet"))
+            } else {
+                logger.warn("No Gradle wrapper in $rootDirectory, run `gradle ${rebuildTaskPath.get()} --continuous` to rebuild the plugin")
+            }
+        }
+
+        if (typescript) {
+            processes.add(startBackground(testsDirectory, "npx", "tsc", "--watch", "--preserveWatchOutput"))
+        }
+        return processes
+    }
+
+    private fun startBackground(dir: File, vararg command: String): Process {
+        val isWindows = System.getProperty("os.name").lowercase().contains("win")
+        val cmd = if (isWindows && (command[0] == "npx" || command[0].endsWith(".bat"))) {
+            listOf("cmd", "/c") + command
+        } else {
+            command.toList()
+        }
+
+        val process = ProcessBuilder(cmd)
+            .directory(dir)
+            .redirectErrorStream(true)
+            .start()
+        Thread {
+            process.inputStream.bufferedReader(Charsets.UTF_8).useLines { lines ->
+                lines.forEach { logger.lifecycle(it) }
+            }
+        }.apply { isDaemon = true }.start()
+        Runtime.getRuntime().addShutdownHook(Thread {
+            if (process.isAlive) killProcessTree(process)
+        })
+        return process
+    }
+
     private fun runProcess(process: Process, command: Array<out String>) {
 
         // Capture stdout
@@ -547,4 +837,8 @@ abstract class TestE2ETask : DefaultTask() {
             // best effort
         }
     }
+
+    companion object {
+        private const val AGENT_JAR = "paper-e2e-agent.jar"
+    }
 }
@@ -0,0 +1,279 @@
+package me.drownek.papere2e
+
+import com.google.gson.GsonBuilder
+import com.google.gson.JsonParser
+import java.io.File
+import java.security.MessageDigest
+
+/**
+ * Decides which spec files have to run again after a change, based on the commands every
+ * spec file sent during its last run.
+ *
+ * Plugin sources are split into units: every LiteCommands `@Execute` method is a unit of its own,
+ * the rest of a command class is another one, any other file is a single unit. A changed command
+ * method only affects specs that sent that command, a changed command class all commands of the
+ * class, and any other changed file every spec, since there is no telling what depends on it.
+ * Command classes that can't be split, like ones with an unterminated comment, count as such a file.
+ */
+internal class TestSelection(private val stateFile: File) {
+
+    class SpecRecord(val hash: String, val passed: Boolean, val commands: List<String>)
+
+    class SourceScan(
+        /** Unit key to content hash. */
+        val units: Map<String, String>,
+        /** Unit key to the command paths it implements, like `example set-balance`. */
+        val commands: Map<String, List<String>>
+    )
+
+    private class State(
+        val specs: Map<String, SpecRecord>,
+        val units: Map<String, String>,
+        val commands: Map<String, List<String>>
+    )
+
+    private val gson = GsonBuilder().setPrettyPrinting().create()
+
+    /**
+     * Returns the ids of the spec files that have to run, or null when every spec has to.
+     * [specs] maps spec ids to the hash of their compiled file.
+     */
+    fun select(specs: Map<String, String>, sources: SourceScan): Set<String>? {
+        val state = readState() ?: return null
+
+        val affectedCommands = mutableSetOf<List<String>>()
+        val changedUnits = (state.units.keys + sources.units.keys).filter { state.units[it] != sources.units[it] }
+        for (unit in changedUnits) {
+            val commands = sources.commands[unit] ?: state.commands[unit]
+            if (commands == null) {
+                return null
+            }
+            commands.forEach { affectedCommands.add(it.split(' ')) }
+        }
+
+        return specs.filter { (id, hash) ->
+            val record = state.specs[id]
+            record == null || !record.passed || record.hash != hash ||
+                record.commands.any { command -> affectedCommands.any { command.split(' ').startsWith(it) } }
+        }.keys
+    }
+
+    /**
+     * Stores what the specs that just ran sent, next to the source units they ran against.
+     * [ran] are the specs that were supposed to run, those without coverage are marked as failed
+     * so they run again next time.
+     */
+    fun record(specs: Map<String, String>, ran: Set<String>, coverageDir: File, sources: SourceScan) {
+        val previous = readState()?.specs ?: emptyMap()
+        val coverage = coverageDir.listFiles { file -> file.name.endsWith(".json") }.orEmpty().associate { file ->
+            val json = JsonParser.parseString(file.readText()).asJsonObject
+            json.get("spec").asString to json
+        }
+
+        val records = specs.keys.mapNotNull { id ->
+            val json = coverage[id]
+            when {
+                json != null -> id to SpecRecord(
+                    specs.getValue(id),
+                    json.get("passed").asBoolean,
+                    json.getAsJsonArray("commands").map { it.asString }
+                )
+                id in ran -> id to SpecRecord(specs.getValue(id), false, emptyList())
+                else -> previous[id]?.let { id to it }
+            }
+        }.toMap()
+
+        stateFile.parentFile.mkdirs()
+        stateFile.writeText(gson.toJson(mapOf(
+            "specs" to records,
+            "units" to sources.units,
+            "commands" to sources.commands
+        )))
+    }
+
+    private fun readState(): State? {
+        if (!stateFile.isFile) return null
+        return try {
+            val json = JsonParser.parseString(stateFile.readText()).asJsonObject
+            State(
+                json.getAsJsonObject("specs").entrySet().associate { (id, value) ->
+                    val spec = value.asJsonObject
+                    id to SpecRecord(spec.get("hash").asString, spec.get("passed").asBoolean, spec.getAsJsonArray("commands").map { it.asString })
+                },
+                json.getAsJsonObject("units").entrySet().associate { (key, value) -> key to value.asString },
+                json.getAsJsonObject("commands").entrySet().associate { (key, value) -> key to value.asJsonArray.map { it.asString } }
+            )
+        } catch (e: Exception) {
+            // unreadable state only costs one full run
+            null
+        }
+    }
+
+    private fun List<String>.startsWith(prefix: List<String>): Boolean =
+        size >= prefix.size && prefix.indices.all { this[it] == prefix[it] }
+
+    companion object {
+        private val CLASS_COMMAND = Regex("""@Command\s*\(([^)]*)\)""")
+        private val EXECUTE = Regex("""@Execute\b(\s*\(([^)]*)\))?""")
+        private val ANNOTATION = Regex("""\G\s*@\w+(\s*\([^)]*\))?""")
+        private val METHOD_NAME = Regex("""(\w+)\s*\(""")
+        private val STRING = Regex(""""((?:[^"\\]|\\.)*)"""")
+        private val SET_EXECUTOR = Regex("""getCommand\(\s*"([^"]+)"\s*\)[\s\S]{0,80}?\.setExecutor\(\s*new\s+(\w+)""")
+
+        fun hash(bytes: ByteArray): String =
+            MessageDigest.getInstance("SHA-256").digest(bytes).joinToString("") { "%02x".format(it) }
+
+        /**
+         * Splits plugin sources into units, see [TestSelection]. Keys are paths relative to [baseDir].
+         */
+        fun scan(files: Collection<File>, baseDir: File): SourceScan {
+            val units = mutableMapOf<String, String>()
+            val commands = mutableMapOf<String, List<String>>()
+            val sources = files.filter { it.isFile }.associateBy { it.relativeTo(baseDir).invariantSeparatorsPath }
+
+            // patterns are matched against the masked text, names are read from the same range of the original
+            val masked = sources.filterValues { it.extension == "java" }.mapValues { (_, file) -> mask(file.readText()) }
+
+            // classes registered as Bukkit command executors, by simple class name
+            val executorCommands = mutableMapOf<String, MutableList<String>>()
+            sources.filterValues { it.extension == "java" }.forEach { (path, file) ->
+                val code = masked[path] ?: return@forEach
+                val text = file.readText()
+                SET_EXECUTOR.findAll(code).forEach {
+                    executorCommands.getOrPut(it.groupValues[2]) { mutableListOf() }.add(text.substring(it.groups[1]!!.range).lowercase())
+                }
+            }
+
+            for ((path, file) in sources) {
+                val text = file.readText()
+                val code = masked[path]
+                if (file.extension == "java" && code == null) {
+                    // a key that never has commands, so a change runs every spec
+                    units["$path!unparsed"] = hash(file.readBytes())
+                    continue
+                }
+
+                val classCommand = code?.let { CLASS_COMMAND.find(it) }
+                if (classCommand == null) {
+                    units[path] = hash(file.readBytes())
+                    executorCommands[file.nameWithoutExtension]?.let { commands[path] = it }
+                    continue
+                }
+
+                val methods = executeMethods(text, code)
+                if (methods == null) {
+                    units["$path!unparsed"] = hash(file.readBytes())
+                    continue
+                }
+
+                val roots = strings(text, classCommand.groups[1]!!.range)
+                val rest = StringBuilder(text)
+                val classCommands = roots.toMutableList()
+                // removed back to front so earlier ranges stay valid
+                for (method in methods.reversed()) {
+                    val names = method.names.ifEmpty { listOf("") }
+                    val paths = roots.flatMap { root -> names.map { "$root $it".trim() } }
+                    // overloads are told apart by their subcommand names
+                    val key = "$path#${method.name}".let { if (it in units) "$it(${names.joinToString()})" else it }
+                    units[key] = hash(text.substring(method.range).toByteArray())
+                    commands[key] = paths
+                    classCommands.addAll(paths)
+                    rest.delete(method.range.first, method.range.last + 1)
+                }
+                units[path] = hash(rest.toString().toByteArray())
+                commands[path] = classCommands.distinct()
+            }
+            return SourceScan(units, commands)
+        }
+
+        private class ExecuteMethod(val name: String, val names: List<String>, val range: IntRange)
+
+        /**
+         * `@Execute` methods of [text], found in its [masked][mask] form [code].
+         * Null when the body of one of them can't be delimited.
+         */
+        private fun executeMethods(text: String, code: String): List<ExecuteMethod>? {
+            val methods = mutableListOf<ExecuteMethod>()
+            for (execute in EXECUTE.findAll(code)) {
+                val names = execute.groups[2]?.let { strings(text, it.range) }.orEmpty()
+
+                // skip further annotations, the first identifier followed by a parenthesis is the method
+                var position = execute.range.last + 1
+                while (true) {
+                    val annotation = ANNOTATION.find(code, position) ?: break
+                    position = annotation.range.last + 1
+                }
+                val name = METHOD_NAME.find(code, position) ?: return null
+                val bodyStart = code.indexOf('{', name.range.last)
+                if (bodyStart == -1) return null
+                val bodyEnd = matchingBrace(code, bodyStart)
+                if (bodyEnd == -1) return null
+
+                methods.add(ExecuteMethod(name.groupValues[1], names, execute.range.first..bodyEnd))
+            }
+            return methods
+        }
+
+        /** Lowercased contents of the string literals of [text] within [range]. */
+        private fun strings(text: String, range: IntRange): List<String> =
+            STRING.findAll(text.substring(range)).map { it.groupValues[1].lowercase() }.toList()
+
+        /** Index of the brace closing the one at [open] in masked [code]. */
+        private fun matchingBrace(code: String, open: Int): Int {
+            var depth = 0
+            for (i in open until code.length) {
+                when (code[i]) {
+                    '{' -> depth++
+                    '}' -> if (--depth == 0) return i
+                }
+            }
+            return -1
+        }
+
+        /**
+         * [text] with comments and the contents of string, text block and char literals blanked out,
+         * so annotations and braces in them aren't mistaken for code. Quotes and line breaks are kept,
+         * every index stays the same. Null when a comment or literal doesn't end.
+         */
+        internal fun mask(text: String): String? {
+            val code = StringBuilder(text)
+            fun blank(from: Int, to: Int) {
+                for (j in from until to) if (code[j] != '\n') code[j] = ' '
+            }
+
+            var i = 0
+            while (i < text.length) {
+                when {
+                    text.startsWith("//", i) -> {
+                        val end = text.indexOf('\n', i).let { if (it == -1) text.length else it }
+                        blank(i, end)
+                        i = end
+                    }
+                    text.startsWith("/*", i) -> {
+                        val end = text.indexOf("*/", i + 2)
+                        if (end == -1) return null
+                        blank(i, end + 2)
+                        i = end + 2
+                    }
+                    text.startsWith("\"\"\"", i) -> {
+                        var j = i + 3
+                        while (j < text.length && !text.startsWith("\"\"\"", j)) j += if (text[j] == '\\') 2 else 1
+                        if (j >= text.length) return null
+                        blank(i + 3, j)
+                        i = j + 3
+                    }
+                    text[i] == '"' || text[i] == '\'' -> {
+                        val quote = text[i]
+                        var j = i + 1
+                        while (j < text.length && text[j] != quote && text[j] != '\n') j += if (text[j] == '\\') 2 else 1
+                        if (j >= text.length || text[j] != quote) return null
+                        blank(i + 1, j)
+                        i = j + 1
+                    }
+                    else -> i++
+                }
+            }
+            return code.toString()
+        }
+    }
+}
@@ -0,0 +1,205 @@
+package me.drownek.papere2e
+
+import com.sun.net.httpserver.HttpExchange
+import com.sun.net.httpserver.HttpServer
+import org.gradle.api.GradleException
+import org.gradle.api.logging.Logging
+import org.junit.jupiter.api.AfterEach
+import org.junit.jupiter.api.Assertions.assertArrayEquals
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertFalse
+import org.junit.jupiter.api.Assertions.assertNull
+import org.junit.jupiter.api.BeforeEach
+import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.assertThrows
+import org.junit.jupiter.api.io.TempDir
+import java.io.File
+import java.net.InetAddress
+import java.net.InetSocketAddress
+import java.net.http.HttpClient
+import java.util.Collections
+import java.util.Properties
+import java.util.concurrent.Callable
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+
+class ArtifactCacheTest {
+
+    @TempDir
+    lateinit var root: File
+
+    private val content = ByteArray(64 * 1024) { (it % 251).toByte() }
+    private val lastModified = "Wed, 01 Jan 2025 00:00:00 GMT"
+    private val requests = Collections.synchronizedList(mutableListOf<Request>())
+
+    /** What the fixture server was asked and what it answered. */
+    private data class Request(val headers: Map<String, String?>, val status: Int)
+
+    private var etag: String? = "\"v1\""
+    // answers ranges from the start of the file, like a server that lost track of the offset
+    private var rangeFromStart = false
+    private lateinit var server: HttpServer
+    private lateinit var url: String
+
+    @BeforeEach
+    fun startServer() {
+        server = HttpServer.create(InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0)
+        server.createContext("/plugin.jar") { exchange -> serve(exchange) }
+        server.start()
+        url = "http://127.0.0.1:${server.address.port}/plugin.jar"
+    }
+
+    @AfterEach
+    fun stopServer() {
+        server.stop(0)
+    }
+
+    /**
+     * Serves [content] the way a CDN does: conditional requests are answered with 304 and a
+     * range is only honoured when If-Range still matches the current validator.
+     */
+    private fun serve(exchange: HttpExchange) {
+        val headers = exchange.requestHeaders
+        val seen = listOf("Range", "If-Range", "If-None-Match", "If-Modified-Since").associateWith { headers.getFirst(it) }
+        val validator = etag ?: lastModified
+        etag?.let { exchange.responseHeaders.add("ETag", it) }
+        exchange.responseHeaders.add("Last-Modified", lastModified)
+
+        val notModified = if (etag != null) seen["If-None-Match"] == etag else seen["If-Modified-Since"] == lastModified
+        val range = seen["Range"]?.takeIf { seen["If-Range"] == validator }
+        val status = when {
+            notModified -> 304
+            range != null -> 206
+            else -> 200
+        }
+        requests.add(Request(seen, status))
+
+        try {
+            when (status) {
+                304 -> exchange.sendResponseHeaders(304, -1)
+                206 -> {
+                    val from = if (rangeFromStart) 0 else range!!.removePrefix("bytes=").removeSuffix("-").toInt()
+                    exchange.responseHeaders.add("Content-Range", "bytes $from-${content.size - 1}/${content.size}")
+                    exchange.sendResponseHeaders(206, (content.size - from).toLong())
+                    exchange.responseBody.write(content, from, content.size - from)
+                }
+                else -> {
+                    exchange.sendResponseHeaders(200, content.size.toLong())
+                    exchange.responseBody.write(content)
+                }
+            }
+        } finally {
+            exchange.close()
+        }
+    }
+
+    private fun cache() = ArtifactCache(
+        root,
+        HttpClient.newHttpClient(),
+        false,
+        Logging.getLogger(ArtifactCacheTest::class.java)
+    )
+
+    private fun partFile(suffix: String = ".part") =
+        File(root, "tmp/${ArtifactCache.sha256(url.toByteArray(Charsets.UTF_8))}$suffix")
+
+    /** Leaves a transfer broken off after [bytes], as a killed build would. */
+    private fun writePartial(bytes: ByteArray, validator: String) {
+        partFile().parentFile.mkdirs()
+        partFile().writeBytes(bytes)
+        partFile(".part.properties").outputStream().use {
+            Properties().apply { setProperty("validator", validator) }.store(it, null)
+        }
+    }
+
+    @Test
+    fun `resumes a partial download with a range request`() {
+        writePartial(content.copyOf(20_000), "\"v1\"")
+
+        val file = cache().fetch(url)
+
+        assertArrayEquals(content, file.readBytes())
+        assertEquals(1, requests.size)
+        assertEquals("bytes=20000-", requests[0].headers["Range"])
+        assertEquals("\"v1\"", requests[0].headers["If-Range"])
+        assertEquals(206, requests[0].status)
+        assertFalse(partFile().exists())
+    }
+
+    @Test
+    fun `downloads the whole file when it changed since the partial download`() {
+        writePartial(ByteArray(20_000) { 7 }, "\"v0\"")
+
+        val file = cache().fetch(url)
+
+        assertArrayEquals(content, file.readBytes())
+        assertEquals(200, requests.single().status)
+    }
+
+    @Test
+    fun `downloads the whole file when the range starts elsewhere`() {
+        writePartial(content.copyOf(20_000), "\"v1\"")
+        rangeFromStart = true
+
+        val file = cache().fetch(url)
+
+        assertArrayEquals(content, file.readBytes())
+        assertEquals(listOf(206, 200), requests.map { it.status })
+        assertNull(requests[1].headers["Range"])
+    }
+
+    @Test
+    fun `concurrent downloads of one URL don't share the partial file`() {
+        val executor = Executors.newFixedThreadPool(4)
+        try {
+            val files = (1..4)
+                .map { executor.submit(Callable { cache().fetch(url) }) }
+                .map { it.get(30, TimeUnit.SECONDS) }
+
+            files.forEach { assertArrayEquals(content, it.readBytes()) }
+        } finally {
+            executor.shutdownNow()
+        }
+    }
+
+    @Test
+    fun `revalidates a cached download with its ETag`() {
+        val first = cache().fetch(url)
+        val second = cache().fetch(url)
+
+        assertEquals(first, second)
+        assertArrayEquals(content, second.readBytes())
+        assertEquals(listOf(200, 304), requests.map { it.status })
+        assertEquals("\"v1\"", requests[1].headers["If-None-Match"])
+    }
+
+    @Test
+    fun `revalidates a cached download with its Last-Modified date`() {
+        etag = null
+
+        val first = cache().fetch(url)
+        val second = cache().fetch(url)
+
+        assertEquals(first, second)
+        assertEquals(listOf(200, 304), requests.map { it.status })
+        assertNull(requests[1].headers["If-None-Match"])
+        assertEquals(lastModified, requests[1].headers["If-Modified-Since"])
+    }
+
+    @Test
+    fun `pinned downloads are not revalidated`() {
+        val sha256 = ArtifactCache.sha256(content)
+        cache().fetch(url, sha256)
+        cache().fetch(url, sha256)
+
+        assertEquals(1, requests.size)
+    }
+
+    @Test
+    fun `drops the download on a checksum mismatch`() {
+        assertThrows<GradleException> { cache().fetch(url, "0".repeat(64)) }
+
+        assertFalse(partFile().exists())
+        assertFalse(partFile(".part.properties").exists())
+    }
+}
@@ -0,0 +1,142 @@
+import { createServer, Socket } from 'net';
+import { LineDecoder } from './console-parser.js';
+import { sleep } from './utils.js';
+
+interface PendingCall {
+    resolve: (result: any) => void;
+    reject: (err: Error) => void;
+    timer: ReturnType<typeof setTimeout>;
+}
+
+/**
+ * Asks the OS for a free port. The port is released again before the server binds it,
+ * which is fine for a loopback port nobody else is looking for.
+ */
+export function findFreePort(): Promise<number> {
+    return new Promise((resolve, reject) => {
+        const probe = createServer();
+        probe.once('error', reject);
+        probe.listen(0, '127.0.0.1', () => {
+            const address = probe.address();
+            probe.close(() => {
+                if (address && typeof address === 'object') {
+                    resolve(address.port);
+                } else {
+                    reject(new Error('Could not determine a free port'));
+                }
+            });
+        });
+    });
+}
+
+/**
+ * Client of the agent plugin installed into the tested server.
+ *
+ * Calls are newline-delimited JSON carrying a request id, so several calls can be in flight
+ * and each one resolves with its own answer once the server ran it on the main thread.
+ */
+export class AgentClient {
+    private readonly socket: Socket;
+    private readonly pending = new Map<number, PendingCall>();
+    private nextId = 1;
+    private closed = false;
+
+    private constructor(socket: Socket) {
+        this.socket = socket;
+
+        const decoder = new LineDecoder();
+        socket.on('data', (chunk: Buffer) => {
+            for (const line of decoder.write(chunk)) {
+                if (line.trim().length > 0) this.onResponse(line);
+            }
+        });
+        socket.on('error', () => { /* reported through 'close' */ });
+        socket.on('close', () => {
+            this.closed = true;
+            for (const [id, call] of this.pending) {
+                clearTimeout(call.timer);
+                call.reject(new Error('Agent connection closed'));
+                this.pending.delete(id);
+            }
+        });
+    }
+
+    /**
+     * Connects to the agent, retrying until `timeout` elapsed since the agent may still be starting.
+     */
+    static async connect(port: number, options: { host?: string; timeout?: number } = {}): Promise<AgentClient> {
+        const { host = '127.0.0.1', timeout = 10000 } = options;
+        const deadline = Date.now() + timeout;
+        let lastError: Error | undefined;
+
+        while (Date.now() < deadline) {
+            try {
+                const socket = await new Promise<Socket>((resolve, reject) => {
+                    const socket = new Socket();
+                    socket.once('error', reject);
+                    socket.connect(port, host, () => {
+                        socket.removeListener('error', reject);
+                        socket.setNoDelay(true);
+                        resolve(socket);
+                    });
+                });
+                const client = new AgentClient(socket);
+                await client.call('ping');
+                return client;
+            } catch (err) {
+                lastError = err as Error;
+            }
+            await sleep(100);
+        }
+
+        throw new Error(`Could not connect to the test agent on ${host}:${port}: ${lastError?.message}`);
+    }
+
+    get connected(): boolean {
+        return !this.closed;
+    }
+
+    /**
+     * Calls `method` on the server, rejecting with the agent's error message if it failed.
+     */
+    call<T = any>(method: string, params: Record<string, unknown> = {}, options: { timeout?: number } = {}): Promise<T> {
+        const { timeout = 5000 } = options;
+        if (this.closed) {
+            return Promise.reject(new Error('Agent connection closed'));
+        }
+
+        const id = this.nextId++;
+        return new Promise<T>((resolve, reject) => {
+            const timer = setTimeout(() => {
+                this.pending.delete(id);
+                reject(new Error(`Agent call "${method}" timed out after ${timeout}ms`));
+            }, timeout);
+            this.pending.set(id, { resolve, reject, timer });
+            this.socket.write(JSON.stringify({ id, method, params }) + '\n');
+        });
+    }
+
+    close(): void {
+        this.socket.destroy();
+    }
+
+    private onResponse(line: string): void {
+        let response: { id?: number; result?: unknown; error?: string };
+        try {
+            response = JSON.parse(line);
+        } catch {
+            return;
+        }
+
+        const call = response.id !== undefined ? this.pending.get(response.id) : undefined;
+        if (!call) return;
+        this.pending.delete(response.id!);
+        clearTimeout(call.timer);
+
+        if (response.error !== undefined) {
+            call.reject(new Error(response.error));
+        } else {
+            call.resolve(response.result);
+        }
+    }
+}
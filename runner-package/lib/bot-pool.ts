@@ -0,0 +1,194 @@
+import { randomUUID } from 'node:crypto';
+import pc from 'picocolors';
+import { PlayerWrapper } from './player.js';
+import { ServerWrapper } from './server.js';
+import { disconnectBot } from './bot-utils.js';
+import { createScope } from './test-scope.js';
+
+interface Position {
+    x: number;
+    y: number;
+    z: number;
+}
+
+/** Time a reset may take before the bot is thrown away instead of reused. */
+const RESET_TIMEOUT_MS = 5000;
+
+function isConnected(player: PlayerWrapper): boolean {
+    return !(player.bot as any)._client?.ended && !!player.bot.entity;
+}
+
+/**
+ * Pre-connected bots leased to tests instead of logging in a new bot for every test.
+ *
+ * Returned bots are reset in the background (inventory, effects, game mode, op status,
+ * position and open windows) before they are leased again, new bots are connected in the
+ * background while tests run so that a lease rarely has to wait for a login.
+ */
+export class BotPool {
+    private readonly size: number;
+    private readonly connect: () => Promise<PlayerWrapper>;
+    private readonly server: ServerWrapper;
+
+    private readonly idle: PlayerWrapper[] = [];
+    private readonly waiters: ((player: PlayerWrapper | null) => void)[] = [];
+    private readonly spawnPoints = new Map<PlayerWrapper, Position>();
+    /** Idle bots are attached to this scope, so nothing they receive reaches a test. */
+    private readonly scope = createScope('bot-pool');
+    private pending = 0;
+    private closed = false;
+
+    /**
+     * @param connect logs in a new bot, outside of any test scope
+     * @param server executes the reset commands
+     */
+    constructor(options: { size: number; connect: () => Promise<PlayerWrapper>; server: ServerWrapper }) {
+        this.size = options.size;
+        this.connect = options.connect;
+        this.server = options.server;
+    }
+
+    /** Connects bots in the background until the pool is full. */
+    warm(): void {
+        while (!this.closed && this.idle.length + this.pending < this.size) {
+            this.pending++;
+            this.connect().then(
+                player => {
+                    this.pending--;
+                    this.rememberSpawn(player);
+                    this.offer(player);
+                },
+                err => {
+                    this.pending--;
+                    console.log(pc.yellow(`[BotPool] Failed to warm a bot: ${(err as Error).message}`));
+                    this.offer(null);
+                }
+            );
+        }
+    }
+
+    /**
+     * Takes a ready bot from the pool, waiting for one being warmed or reset if there is none.
+     * Scope and server wrapper of the returned player still have to be attached by the caller.
+     */
+    async lease(): Promise<PlayerWrapper> {
+        let player = this.idle.pop();
+        if (!player && this.pending > 0) {
+            player = await new Promise<PlayerWrapper | null>(resolve => this.waiters.push(resolve)) ?? undefined;
+        }
+        if (this.closed) {
+            throw new Error('Bot pool is closed');
+        }
+        this.warm();
+
+        if (player && isConnected(player)) {
+            return player;
+        }
+        if (player) {
+            this.discard(player);
+        }
+
+        // nothing ready or warming failed, connect directly so a login error reaches the test
+        const fresh = await this.connect();
+        this.rememberSpawn(fresh);
+        return fresh;
+    }
+
+    /**
+     * Returns a leased bot. It is reset in the background and only offered again once reset.
+     * Bots that disconnected during the test are replaced.
+     */
+    release(player: PlayerWrapper): void {
+        if (this.closed || !isConnected(player)) {
+            this.discard(player);
+            this.warm();
+            return;
+        }
+
+        this.pending++;
+        this.reset(player).then(
+            () => {
+                this.pending--;
+                this.offer(player);
+            },
+            err => {
+                this.pending--;
+                console.log(pc.yellow(`[BotPool] Failed to reset ${player.username}, replacing it: ${(err as Error).message}`));
+                this.discard(player);
+                this.offer(null);
+                this.warm();
+            }
+        );
+    }
+
+    /** Disconnects all idle bots, leases waiting for a bot fail. */
+    async drain(): Promise<void> {
+        this.closed = true;
+        this.waiters.splice(0).forEach(resolve => resolve(null));
+        const idle = this.idle.splice(0);
+        await Promise.all(idle.map(player => disconnectBot(player.bot, player.username)));
+        this.spawnPoints.clear();
+    }
+
+    private async reset(player: PlayerWrapper): Promise<void> {
+        const scope = this.scope;
+        const bot = player.bot;
+        if (bot.currentWindow) {
+            bot.closeWindow(bot.currentWindow);
+        }
+
+        // detached from the finished test, late messages must not reach the next one
+        player._attach(scope, this.server);
+
+        const name = player.username;
+        const spawn = this.spawnPoints.get(player);
+        const commands = [
+            `minecraft:clear ${name}`,
+            `minecraft:effect clear ${name}`,
+            `minecraft:gamemode survival ${name}`,
+            `minecraft:deop ${name}`,
+        ];
+        if (spawn) {
+            commands.push(`minecraft:tp ${name} ${spawn.x} ${spawn.y} ${spawn.z}`);
+        }
+
+        if (this.server.agent) {
+            await Promise.all(commands.map(command => this.server.dispatch(command)));
+            return;
+        }
+        commands.forEach(command => this.server.execute(command));
+
+        // commands run in order, once the bot sees the marker all of them were applied
+        const marker = `pool_reset_${randomUUID().split('-')[0]}`;
+        const from = scope.messages.length;
+        this.server.execute(`minecraft:tell ${name} ${marker}`);
+        const confirmed = await scope.messages.waitFor(m => m.includes(marker), { from, timeout: RESET_TIMEOUT_MS });
+        if (confirmed === undefined) {
+            throw new Error(`reset not confirmed within ${RESET_TIMEOUT_MS}ms`);
+        }
+    }
+
+    private rememberSpawn(player: PlayerWrapper): void {
+        const { x, y, z } = player.bot.entity.position;
+        this.spawnPoints.set(player, { x, y, z });
+        player._attach(this.scope, this.server);
+    }
+
+    private offer(player: PlayerWrapper | null): void {
+        if (player && this.closed) {
+            this.discard(player);
+            return;
+        }
+        const waiter = this.waiters.shift();
+        if (waiter) {
+            waiter(player);
+        } else if (player) {
+            this.idle.push(player);
+        }
+    }
+
+    private discard(player: PlayerWrapper): void {
+        this.spawnPoints.delete(player);
+        disconnectBot(player.bot, player.username).catch(() => { /* best effort */ });
+    }
+}
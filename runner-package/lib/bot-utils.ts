@@ -1,10 +1,16 @@
 import mineflayer, { Bot } from 'mineflayer';
 import pc from 'picocolors';
+import { MessageLog } from './message-log.js';
+import { ConsoleLine, LineDecoder, parseConsoleLine } from './console-parser.js';
+import { allOpenScopes, consoleScopes, currentScope, rootScope, TestScope } from './test-scope.js';
 
-/** Shared mutable state for active bots and message buffers. */
-export const activeBots: Bot[] = [];
-export const messageBuffer: string[] = [];
-export const serverConsoleBuffer: string[] = [];
+/**
+ * Bots and buffers of the root scope, used outside of tests.
+ * Tests capture into their own {@link TestScope}, see {@link currentScope}.
+ */
+export const activeBots: Bot[] = rootScope.bots;
+export const messageBuffer: MessageLog = rootScope.messages;
+export const serverConsoleBuffer: MessageLog<ConsoleLine> = rootScope.console;
 
 /**
  * Disconnects a bot, waiting for the `end` event or a timeout.
@@ -38,7 +44,7 @@ export function disconnectBot(bot: Bot, label: string, timeoutMs: number = 3000)
 }
 
 /**
- * Creates a new mineflayer bot and registers it in the activeBots list.
+ * Creates a new mineflayer bot and registers it in the bot list of the current scope.
  */
 export function createBot(options: {
     host: string;
@@ -46,7 +52,7 @@ export function createBot(options: {
     username: string;
     version: string | undefined;
     auth: 'mojang' | 'microsoft' | 'offline';
-}): Bot {
+}, scope: TestScope = currentScope()): Bot {
     const bot = mineflayer.createBot({
         host: options.host,
         port: options.port,
@@ -55,7 +61,7 @@ export function createBot(options: {
         auth: options.auth,
     });
 
-    activeBots.push(bot);
+    scope.bots.push(bot);
 
     bot.once('end', (reason: string) => {
         console.log(pc.dim(`[Bot] ${options.username} connection ended: ${reason}`));
@@ -65,10 +71,10 @@ export function createBot(options: {
 }
 
 /**
- * Disconnects all active bots and clears the list.
+ * Disconnects the bots of a scope and clears its list.
  */
-export async function disconnectAllBots(): Promise<void> {
-    await Promise.all(activeBots.map(b => {
+export async function disconnectScopeBots(scope: TestScope): Promise<void> {
+    await Promise.all(scope.bots.map(b => {
         const isAlreadyEnded = !!(b as any)._client?.ended;
         if (isAlreadyEnded) {
             return Promise.resolve();
@@ -94,22 +100,50 @@ export async function disconnectAllBots(): Promise<void> {
         });
     }));
 
-    activeBots.length = 0;
+    scope.bots.length = 0;
 }
 
 /**
- * Writes Minecraft server output to the console and appends to the server console buffer.
+ * Disconnects the bots of every open scope and clears their lists.
  */
-export function writeMcOutput(data: Buffer): void {
-    const text = data.toString().replace(/\r\n/g, '\n');
-    const lines = text.split('\n');
-    for (const line of lines) {
-        if (line.length > 0) {
-            serverConsoleBuffer.push(line);
-        }
+export async function disconnectAllBots(): Promise<void> {
+    await Promise.all(allOpenScopes().map(disconnectScopeBots));
+}
+
+const serverLineListeners = new Set<(line: ConsoleLine) => void>();
+
+/**
+ * Calls `listener` with every parsed server console line, regardless of the running tests.
+ * Returns a function removing the listener.
+ */
+export function onServerLine(listener: (line: ConsoleLine) => void): () => void {
+    serverLineListeners.add(listener);
+    return () => serverLineListeners.delete(listener);
+}
+
+function writeMcLine(text: string): void {
+    if (text.length === 0) {
+        process.stdout.write('\n');
+        return;
+    }
+    process.stdout.write(`${pc.gray('[MC]')} ${text}\n`);
+
+    const line = parseConsoleLine(text);
+    // the console is shared by all running tests
+    for (const scope of consoleScopes()) {
+        scope.console.push(line);
+    }
+    for (const listener of serverLineListeners) {
+        listener(line);
     }
-    const prefixed = lines
-        .map(line => line.length > 0 ? `${pc.gray('[MC]')} ${line}` : '')
-        .join('\n');
-    process.stdout.write(prefixed);
-}
\ No newline at end of file
+}
+
+/**
+ * Prints a server output stream line by line and captures every line parsed,
+ * for the whole lifetime of the stream.
+ */
+export function pipeServerOutput(stream: NodeJS.ReadableStream): void {
+    const decoder = new LineDecoder();
+    stream.on('data', (data: Buffer) => decoder.write(data).forEach(writeMcLine));
+    stream.on('end', () => decoder.end().forEach(writeMcLine));
+}
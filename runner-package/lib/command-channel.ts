@@ -0,0 +1,143 @@
+import type { Writable } from 'node:stream';
+import { randomUUID } from 'node:crypto';
+import pc from 'picocolors';
+import type { ConsoleLine } from './console-parser.js';
+
+const ACK_TIMEOUT_MS = 10000;
+
+interface PendingAck {
+    resolve: () => void;
+    reject: (err: Error) => void;
+}
+
+interface PendingBatch {
+    waiting: PendingAck[];
+    timer: ReturnType<typeof setTimeout>;
+}
+
+interface QueuedCommand {
+    command: string;
+    ack?: PendingAck;
+}
+
+/**
+ * Console commands sent to the server's stdin.
+ *
+ * Commands sent in the same tick go out as a single write, and while the pipe is full they keep
+ * queueing until it drained. Commands that want an acknowledgement get a marker command appended
+ * to their batch: the server runs console commands in order, so once the marker's output shows up
+ * every command before it was executed.
+ */
+export class CommandChannel {
+    private readonly stdin: () => Writable;
+    private queue: QueuedCommand[] = [];
+    private readonly acks = new Map<string, PendingBatch>();
+    private flushScheduled = false;
+    private waitingForDrain = false;
+
+    /**
+     * @param stdin Returns the stdin of the current server process, which changes on restarts.
+     * @param onLine Subscribes to parsed console lines.
+     */
+    constructor(stdin: () => Writable, onLine: (listener: (line: ConsoleLine) => void) => () => void) {
+        this.stdin = stdin;
+        onLine(line => this.onLine(line));
+    }
+
+    /**
+     * Queues a command without waiting for it.
+     */
+    send(command: string): void {
+        this.enqueue({ command });
+    }
+
+    /**
+     * Queues a command and resolves once the server executed it.
+     */
+    sendAndWait(command: string): Promise<void> {
+        return new Promise((resolve, reject) => this.enqueue({ command, ack: { resolve, reject } }));
+    }
+
+    /**
+     * Drops queued commands and fails every command still waiting, e.g. before the server stops.
+     */
+    reset(reason: string): void {
+        const error = new Error(reason);
+        this.queue.forEach(queued => queued.ack?.reject(error));
+        this.queue = [];
+        for (const batch of this.acks.values()) {
+            clearTimeout(batch.timer);
+            batch.waiting.forEach(ack => ack.reject(error));
+        }
+        this.acks.clear();
+        this.waitingForDrain = false;
+    }
+
+    private enqueue(queued: QueuedCommand): void {
+        console.log(`${pc.yellow('[Server]')} ${pc.dim(`Executing: ${queued.command}`)}`);
+        this.queue.push(queued);
+        if (this.flushScheduled || this.waitingForDrain) return;
+        this.flushScheduled = true;
+        setImmediate(() => {
+            this.flushScheduled = false;
+            this.flush();
+        });
+    }
+
+    private flush(): void {
+        if (this.queue.length === 0) return;
+        const batch = this.queue;
+        this.queue = [];
+
+        const lines = batch.map(queued => queued.command);
+        const waiting = batch.flatMap(queued => queued.ack ? [queued.ack] : []);
+        let marker: string | undefined;
+        if (waiting.length > 0) {
+            // a function that doesn't exist only prints its id to the console, players don't see it
+            marker = `paper_e2e:ack_${randomUUID().replace(/-/g, '')}`;
+            lines.push(`minecraft:function ${marker}`);
+            this.track(marker, waiting);
+        }
+
+        const stdin = this.stdin();
+        const flushed = stdin.write(lines.join('\n') + '\n', err => {
+            if (!err) return;
+            console.error(`[Server] Write error: ${err}`);
+            if (marker) this.fail(marker, err);
+        });
+
+        if (!flushed) {
+            this.waitingForDrain = true;
+            stdin.once('drain', () => {
+                this.waitingForDrain = false;
+                this.flush();
+            });
+        }
+    }
+
+    private track(marker: string, waiting: PendingAck[]): void {
+        const timer = setTimeout(() => {
+            this.fail(marker, new Error(`Server did not acknowledge ${waiting.length} command(s) within ${ACK_TIMEOUT_MS}ms`));
+        }, ACK_TIMEOUT_MS);
+        this.acks.set(marker, { waiting, timer });
+    }
+
+    private fail(marker: string, err: Error): void {
+        const batch = this.acks.get(marker);
+        if (!batch) return;
+        this.acks.delete(marker);
+        clearTimeout(batch.timer);
+        batch.waiting.forEach(ack => ack.reject(err));
+    }
+
+    private onLine(line: ConsoleLine): void {
+        if (this.acks.size === 0 || !line.message.includes('paper_e2e:ack_')) return;
+        for (const [marker, batch] of this.acks) {
+            if (!line.message.includes(marker)) continue;
+            this.acks.delete(marker);
+            clearTimeout(batch.timer);
+            batch.waiting.forEach(ack => ack.resolve());
+            return;
+        }
+    }
+}
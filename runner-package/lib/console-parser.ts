@@ -0,0 +1,94 @@
+import { StringDecoder } from 'string_decoder';
+
+export type LogLevel = 'TRACE' | 'DEBUG' | 'INFO' | 'WARN' | 'ERROR' | 'FATAL';
+
+/**
+ * A single line of server console output, parsed once when it arrives.
+ * Lines not following the log format (stack traces, startup output) only have `raw` and `message`.
+ */
+export interface ConsoleLine {
+    /** The line as printed by the server, without color codes. */
+    raw: string;
+    /** `HH:mm:ss` time the server printed. */
+    timestamp?: string;
+    /** Thread name, only printed in the vanilla log format. */
+    thread?: string;
+    level?: LogLevel;
+    /** Plugin or logger prefix of the message, like `Vault` for `[Vault] Enabling...`. */
+    logger?: string;
+    /** The message without timestamp, level and logger prefix. */
+    message: string;
+}
+
+const ANSI_PATTERN = /\x1b\[[0-9;]*m/g;
+
+/** Paper console: `[12:00:00 INFO]: message` */
+const PAPER_PATTERN = /^\[(\d{2}:\d{2}:\d{2})\s+([A-Z]+)\]:\s?(.*)$/;
+
+/** Vanilla / latest.log: `[12:00:00] [Server thread/INFO]: message` */
+const VANILLA_PATTERN = /^\[(\d{2}:\d{2}:\d{2})\]\s+\[([^\]]+)\/([A-Z]+)\]:\s?(.*)$/;
+
+/** Logger prefix at the start of a message: `[Vault] message` */
+const LOGGER_PATTERN = /^\[([^\]\s]+)\]\s(.*)$/;
+
+const LEVELS = new Set<string>(['TRACE', 'DEBUG', 'INFO', 'WARN', 'ERROR', 'FATAL']);
+
+export function parseConsoleLine(line: string): ConsoleLine {
+    const raw = line.replace(ANSI_PATTERN, '');
+
+    let timestamp: string | undefined;
+    let thread: string | undefined;
+    let level: string | undefined;
+    let message: string;
+
+    const paper = PAPER_PATTERN.exec(raw);
+    const vanilla = paper ? null : VANILLA_PATTERN.exec(raw);
+    if (paper) {
+        [, timestamp, level, message] = paper;
+    } else if (vanilla) {
+        [, timestamp, thread, level, message] = vanilla;
+    } else {
+        return { raw, message: raw };
+    }
+
+    let logger: string | undefined;
+    const prefixed = LOGGER_PATTERN.exec(message);
+    if (prefixed) {
+        [, logger, message] = prefixed;
+    }
+
+    return {
+        raw,
+        timestamp,
+        thread,
+        level: LEVELS.has(level) ? level as LogLevel : undefined,
+        logger,
+        message,
+    };
+}
+
+/**
+ * Splits a stream of chunks into lines. Partial lines and multi-byte characters
+ * cut at a chunk boundary are kept until the rest arrives.
+ */
+export class LineDecoder {
+    private readonly decoder = new StringDecoder('utf8');
+    private partial = '';
+
+    write(chunk: Buffer): string[] {
+        return this.split(this.partial + this.decoder.write(chunk));
+    }
+
+    /** Returns the last line if the stream didn't end with a line break. */
+    end(): string[] {
+        const rest = this.partial + this.decoder.end();
+        this.partial = '';
+        return rest.length > 0 ? [rest.replace(/\r$/, '')] : [];
+    }
+
+    private split(text: string): string[] {
+        const lines = text.split('\n');
+        this.partial = lines.pop()!;
+        return lines.map(line => line.replace(/\r$/, ''));
+    }
+}
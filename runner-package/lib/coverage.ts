@@ -0,0 +1,50 @@
+import { createHash } from 'node:crypto';
+import { mkdir, writeFile } from 'fs/promises';
+import { join, relative, sep } from 'path';
+import type { TestResult } from './types.js';
+
+/** Words kept of every command, enough to tell subcommands apart. */
+const COMMAND_WORDS = 4;
+
+let specCommands = new Set<string>();
+
+/**
+ * `/Example:Example  Set-Balance Bob 10` -> `example set-balance bob 10`.
+ * Only the leading words are kept, arguments past them don't identify the command.
+ */
+export function normalizeCommand(command: string): string {
+    const words = command.trim().replace(/^\//, '').toLowerCase().split(/\s+/).slice(0, COMMAND_WORDS);
+    words[0] = words[0].replace(/^[\w.-]+:/, '');
+    return words.join(' ');
+}
+
+/**
+ * Remembers a command sent while the current spec file runs, players' slash commands
+ * as well as console commands.
+ */
+export function recordCommand(command: string): void {
+    if (!process.env.PAPER_E2E_COVERAGE_DIR) return;
+    specCommands.add(normalizeCommand(command));
+}
+
+export function beginSpecCoverage(): void {
+    specCommands = new Set();
+}
+
+/**
+ * Writes the commands the spec file sent and whether all its tests passed, for the Gradle
+ * plugin to decide which spec files a source change affects.
+ */
+export async function writeSpecCoverage(file: string, results: TestResult[]): Promise<void> {
+    const dir = process.env.PAPER_E2E_COVERAGE_DIR;
+    if (!dir) return;
+
+    const spec = relative(process.cwd(), file).split(sep).join('/');
+    const name = createHash('sha1').update(spec).digest('hex');
+    await mkdir(dir, { recursive: true });
+    await writeFile(join(dir, `${name}.json`), JSON.stringify({
+        spec,
+        passed: results.every(result => result.passed),
+        commands: [...specCommands].sort(),
+    }));
+}
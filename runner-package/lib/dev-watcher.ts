@@ -0,0 +1,111 @@
+import { watch, FSWatcher } from 'fs';
+import { readdir } from 'fs/promises';
+import { basename, dirname, join } from 'path';
+
+export interface DevChange {
+    /** Whether the jar of the plugin under test was rebuilt. */
+    pluginChanged: boolean;
+    /** Spec files written since the last change was taken. */
+    specFiles: string[];
+}
+
+async function listDirectories(dir: string): Promise<string[]> {
+    const dirs = [dir];
+    for (const entry of await readdir(dir, { withFileTypes: true })) {
+        if (entry.isDirectory() && entry.name !== 'node_modules' && entry.name !== '.git') {
+            dirs.push(...await listDirectories(join(dir, entry.name)));
+        }
+    }
+    return dirs;
+}
+
+/**
+ * Watches the plugin jar and the compiled spec files for dev mode.
+ *
+ * Builds write files in several steps, so changes are collected until nothing was written
+ * for `debounceMs` and then handed out together.
+ */
+export class DevWatcher {
+    private readonly watchers: FSWatcher[] = [];
+    private readonly changedSpecs = new Set<string>();
+    private pluginChanged = false;
+    private timer: ReturnType<typeof setTimeout> | undefined;
+    private waiter: ((change: DevChange) => void) | undefined;
+
+    private constructor(private readonly debounceMs: number) {}
+
+    /**
+     * @param pluginJar jar the build writes the plugin to
+     * @param specRoot directory searched for `*.spec.js` files, watched per directory since
+     *   recursive watching isn't available on Linux before Node 20
+     */
+    static async start(options: { pluginJar?: string; specRoot: string; debounceMs?: number }): Promise<DevWatcher> {
+        const watcher = new DevWatcher(options.debounceMs ?? 500);
+
+        if (options.pluginJar) {
+            const jarName = basename(options.pluginJar);
+            // the directory is watched, builds replace the jar instead of writing into it
+            watcher.add(dirname(options.pluginJar), name => {
+                if (name !== jarName) return;
+                watcher.pluginChanged = true;
+                watcher.schedule();
+            });
+        }
+
+        for (const dir of await listDirectories(options.specRoot)) {
+            watcher.add(dir, name => {
+                if (!name.endsWith('.spec.js')) return;
+                watcher.changedSpecs.add(join(dir, name));
+                watcher.schedule();
+            });
+        }
+
+        return watcher;
+    }
+
+    /**
+     * Resolves with the next batch of changes.
+     */
+    next(): Promise<DevChange> {
+        return new Promise(resolve => {
+            this.waiter = resolve;
+            // changes that settled while tests ran are handed out right away
+            if (this.timer === undefined && (this.pluginChanged || this.changedSpecs.size > 0)) {
+                this.flush();
+            }
+        });
+    }
+
+    close(): void {
+        clearTimeout(this.timer);
+        this.watchers.splice(0).forEach(w => w.close());
+    }
+
+    private add(dir: string, onChange: (name: string) => void): void {
+        try {
+            const w = watch(dir, (_event, name) => {
+                if (name) onChange(name.toString());
+            });
+            this.watchers.push(w);
+        } catch {
+            // directory not created yet by the first build, nothing to watch
+        }
+    }
+
+    private schedule(): void {
+        clearTimeout(this.timer);
+        this.timer = setTimeout(() => {
+            this.timer = undefined;
+            if (this.waiter) this.flush();
+        }, this.debounceMs);
+    }
+
+    private flush(): void {
+        const waiter = this.waiter!;
+        this.waiter = undefined;
+        const change = { pluginChanged: this.pluginChanged, specFiles: [...this.changedSpecs] };
+        this.pluginChanged = false;
+        this.changedSpecs.clear();
+        waiter(change);
+    }
+}
@@ -0,0 +1,286 @@
+import { randomUUID } from 'node:crypto';
+import pc from 'picocolors';
+import type { PlayerWrapper } from './player.js';
+import type { ServerWrapper } from './server.js';
+import type { TestContext } from './types.js';
+import { currentScope } from './test-scope.js';
+import { sleep } from './utils.js';
+
+export interface LoadTestOptions {
+    /** Number of bots logged in for the test. */
+    bots: number;
+    /** Delay between two bot logins in ms, so the server isn't hit by all logins at once (default: 250). */
+    loginInterval?: number;
+    /** Actions started per second across all bots. */
+    rate: number;
+    /** Length of the measured phase in ms, it starts once all bots logged in (default: 30000). */
+    duration?: number;
+    /** Runs once for every bot after it logged in, not measured. */
+    setup?: (player: PlayerWrapper, server: ServerWrapper) => Promise<void>;
+    /** Fails the test when a percentile of the whole action (in ms) or the error rate (0 to 1) is higher. */
+    thresholds?: { p50?: number; p95?: number; p99?: number; errorRate?: number };
+}
+
+export interface LoadActionContext {
+    player: PlayerWrapper;
+    server: ServerWrapper;
+    /** Number of the action across all bots, starting at 0. */
+    iteration: number;
+    signal: AbortSignal;
+    /**
+     * Times a step of the action on its own, it is reported in a separate row.
+     * A failing step counts as an error of that step and of the action.
+     */
+    measure<T>(name: string, fn: () => Promise<T>): Promise<T>;
+}
+
+export type LoadAction = (context: LoadActionContext) => Promise<void>;
+
+export interface LoadStepStats {
+    name: string;
+    count: number;
+    errors: number;
+    p50: number;
+    p95: number;
+    p99: number;
+    max: number;
+}
+
+export interface LoadReport {
+    bots: number;
+    loginFailures: number;
+    durationMs: number;
+    /** Completed actions per second. */
+    throughput: number;
+    /** Actions not started because every bot was still busy with its previous one. */
+    skipped: number;
+    errorRate: number;
+    /** The whole action first, then the measured steps. */
+    steps: LoadStepStats[];
+}
+
+const ACTION = 'action';
+
+/**
+ * Time the test needs beyond the measured phase: logins, setup and the last actions finishing.
+ */
+export function loadTestTimeout(options: LoadTestOptions): number {
+    const { bots, loginInterval = 250, duration = 30000 } = options;
+    return bots * loginInterval + duration + 60000;
+}
+
+class LatencyRecorder {
+    private readonly samples = new Map<string, number[]>();
+    private readonly errors = new Map<string, number>();
+
+    record(name: string, ms: number, failed: boolean): void {
+        if (!this.samples.has(name)) {
+            this.samples.set(name, []);
+            this.errors.set(name, 0);
+        }
+        this.samples.get(name)!.push(ms);
+        if (failed) this.errors.set(name, this.errors.get(name)! + 1);
+    }
+
+    stats(): LoadStepStats[] {
+        const names = [...this.samples.keys()].sort((a, b) => a === ACTION ? -1 : b === ACTION ? 1 : 0);
+        return names.map(name => {
+            const sorted = [...this.samples.get(name)!].sort((a, b) => a - b);
+            return {
+                name,
+                count: sorted.length,
+                errors: this.errors.get(name)!,
+                p50: percentile(sorted, 50),
+                p95: percentile(sorted, 95),
+                p99: percentile(sorted, 99),
+                max: sorted.length > 0 ? sorted[sorted.length - 1] : 0,
+            };
+        });
+    }
+}
+
+/** Nearest-rank percentile of ascending `sorted` samples. */
+function percentile(sorted: number[], p: number): number {
+    if (sorted.length === 0) return 0;
+    return sorted[Math.min(sorted.length - 1, Math.max(0, Math.ceil(p / 100 * sorted.length) - 1))];
+}
+
+async function timed<T>(recorder: LatencyRecorder, name: string, fn: () => Promise<T>): Promise<T> {
+    const start = performance.now();
+    try {
+        const result = await fn();
+        recorder.record(name, performance.now() - start, false);
+        return result;
+    } catch (error) {
+        recorder.record(name, performance.now() - start, true);
+        throw error;
+    }
+}
+
+/**
+ * Logs in the bots one after another, then starts actions at the target rate on whichever bot
+ * is idle, round-robin, until the measured phase is over.
+ */
+export async function runLoadTest(context: TestContext, options: LoadTestOptions, action: LoadAction): Promise<LoadReport> {
+    const { bots, loginInterval = 250, rate, duration = 30000, setup, thresholds } = options;
+    const { server, signal } = context;
+    if (bots < 1 || rate <= 0) {
+        throw new Error('[LoadTest] bots must be at least 1 and rate greater than 0');
+    }
+
+    // the test's own player is the first bot, the others get short unique names
+    const prefix = `Load_${randomUUID().slice(0, 4)}`;
+    console.log(`${pc.cyan('[LoadTest]')} Logging in ${bots} bot(s), one every ${loginInterval}ms`);
+    // settled right away, a login failing while later bots are still queued must not go unhandled
+    type Login = { player: PlayerWrapper } | { error: Error };
+    const logins: Promise<Login>[] = [Promise.resolve({ player: context.player })];
+    for (let i = 1; i < bots; i++) {
+        await sleep(loginInterval, signal);
+        logins.push(context.createPlayer({ username: `${prefix}_${i}` }).then(
+            player => ({ player }),
+            error => ({ error: error as Error })
+        ));
+    }
+
+    const players: PlayerWrapper[] = [];
+    let loginFailures = 0;
+    for (const login of await Promise.all(logins)) {
+        if ('player' in login) {
+            players.push(login.player);
+        } else {
+            loginFailures++;
+            console.log(pc.yellow(`[LoadTest] Login failed: ${login.error.message}`));
+        }
+    }
+    if (players.length === 0) {
+        throw new Error('[LoadTest] No bot could log in');
+    }
+
+    if (setup) {
+        await Promise.all(players.map(player => setup(player, server)));
+    }
+
+    console.log(`${pc.cyan('[LoadTest]')} ${players.length} bot(s) ready, running ${rate} action(s)/s for ${duration}ms`);
+    const recorder = new LatencyRecorder();
+    const busy = new Set<PlayerWrapper>();
+    const running = new Set<Promise<void>>();
+    let iteration = 0;
+    let skipped = 0;
+    let next = 0;
+
+    const start = performance.now();
+    const interval = 1000 / rate;
+    for (let tick = 0; ; tick++) {
+        const due = start + tick * interval;
+        if (due - start >= duration || signal.aborted) break;
+        const wait = due - performance.now();
+        if (wait > 0) await sleep(wait, signal).catch(() => undefined);
+        if (signal.aborted) break;
+
+        const player = findIdle(players, busy, next);
+        if (!player) {
+            skipped++;
+            continue;
+        }
+        next = (players.indexOf(player) + 1) % players.length;
+        busy.add(player);
+
+        const actionContext: LoadActionContext = {
+            player,
+            server,
+            iteration: iteration++,
+            signal,
+            measure: (name, fn) => timed(recorder, name, fn),
+        };
+        const run: Promise<void> = timed(recorder, ACTION, () => action(actionContext))
+            .catch(error => console.log(pc.dim(`[LoadTest] Action failed on ${player.username}: ${(error as Error).message}`)))
+            .finally(() => {
+                busy.delete(player);
+                running.delete(run);
+            });
+        running.add(run);
+    }
+    await Promise.all(running);
+
+    const durationMs = performance.now() - start;
+    const steps = recorder.stats();
+    const total = steps.find(step => step.name === ACTION);
+    const completed = total ? total.count - total.errors : 0;
+    const report: LoadReport = {
+        bots: players.length,
+        loginFailures,
+        durationMs: Math.round(durationMs),
+        throughput: completed / (durationMs / 1000),
+        skipped,
+        errorRate: total && total.count > 0 ? total.errors / total.count : 0,
+        steps,
+    };
+
+    currentScope().loadReport = report;
+    printLoadReport(report);
+    checkThresholds(report, thresholds);
+    return report;
+}
+
+function findIdle(players: PlayerWrapper[], busy: Set<PlayerWrapper>, from: number): PlayerWrapper | undefined {
+    for (let i = 0; i < players.length; i++) {
+        const player = players[(from + i) % players.length];
+        if (!busy.has(player)) return player;
+    }
+    return undefined;
+}
+
+function checkThresholds(report: LoadReport, thresholds: LoadTestOptions['thresholds']): void {
+    if (!thresholds) return;
+    const total = report.steps.find(step => step.name === ACTION);
+    const violations: string[] = [];
+    for (const key of ['p50', 'p95', 'p99'] as const) {
+        const limit = thresholds[key];
+        if (limit !== undefined && total && total[key] > limit) {
+            violations.push(`${key} ${formatMs(total[key])} > ${formatMs(limit)}`);
+        }
+    }
+    if (thresholds.errorRate !== undefined && report.errorRate > thresholds.errorRate) {
+        violations.push(`error rate ${formatPercent(report.errorRate)} > ${formatPercent(thresholds.errorRate)}`);
+    }
+    if (violations.length > 0) {
+        throw new Error(`[LoadTest] Thresholds exceeded: ${violations.join(', ')}`);
+    }
+}
+
+function formatMs(ms: number): string {
+    return `${ms < 10 ? ms.toFixed(1) : Math.round(ms)}ms`;
+}
+
+function formatPercent(ratio: number): string {
+    return `${(ratio * 100).toFixed(1)}%`;
+}
+
+/**
+ * Prints the latency table of a load test, one row for the whole action and one per measured step.
+ */
+export function printLoadReport(report: LoadReport, indent: string = '    '): void {
+    console.log(`${indent}${pc.bold('Load:')} ${report.bots} bot(s)` +
+        (report.loginFailures > 0 ? pc.yellow(`, ${report.loginFailures} login failure(s)`) : '') +
+        `, ${report.throughput.toFixed(1)} action(s)/s, error rate ${formatPercent(report.errorRate)}` +
+        (report.skipped > 0 ? pc.yellow(`, ${report.skipped} skipped (all bots busy)`) : ''));
+
+    const headers = ['Step', 'Count', 'Errors', 'p50', 'p95', 'p99', 'Max'];
+    const rows = report.steps.map(step => [
+        step.name,
+        String(step.count),
+        String(step.errors),
+        formatMs(step.p50),
+        formatMs(step.p95),
+        formatMs(step.p99),
+        formatMs(step.max),
+    ]);
+    const widths = headers.map((header, i) => Math.max(header.length, ...rows.map(row => row[i].length)));
+    const format = (cells: string[]) => cells.map((cell, i) => i === 0 ? cell.padEnd(widths[i]) : cell.padStart(widths[i])).join('  ');
+
+    console.log(`${indent}${pc.dim(format(headers))}`);
+    console.log(`${indent}${pc.dim(widths.map(w => '─'.repeat(w)).join('  '))}`);
+    for (const row of rows) {
+        console.log(`${indent}${format(row)}`);
+    }
+}
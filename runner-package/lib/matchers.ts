@@ -2,8 +2,10 @@ import { Matchers } from './expect.js';
 import { PlayerWrapper } from './player.js';
 import { ServerWrapper } from './server.js';
 import { GuiItemLocator } from './wrappers.js';
-import { messageBuffer, serverConsoleBuffer } from './bot-utils.js';
 import { sleep } from './utils.js';
+import { sampleMetrics } from './metrics.js';
+import type { MessageLog } from './message-log.js';
+import type { ConsoleLine, LogLevel } from './console-parser.js';
 
 export class RunnerMatchers<T = unknown> extends Matchers<T> {
     constructor(actual: T, isNot: boolean = false) {
@@ -62,23 +64,65 @@ export class RunnerMatchers<T = unknown> extends Matchers<T> {
     async toHaveReceivedMessage(
         this: RunnerMatchers<PlayerWrapper | ServerWrapper>,
         expectedMessage: string | RegExp,
-        options: { strict?: boolean; timeout?: number; pollingRate?: number; since?: number } = {}
+        // pollingRate is accepted for compatibility, messages are matched as they arrive
+        options: {
+            strict?: boolean;
+            timeout?: number;
+            pollingRate?: number;
+            since?: number;
+            /** Only match console lines logged with one of these levels, server only. */
+            level?: LogLevel | LogLevel[];
+            /** Only match console lines of this logger, e.g. a plugin name, server only. */
+            logger?: string;
+        } = {}
     ): Promise<void> {
-        const { strict = false, timeout, pollingRate, since } = options;
+        const { strict = false, timeout = 5000, since = 0, level, logger } = options;
         const isMatch = (msg: string): boolean => {
-            if (expectedMessage instanceof RegExp) return expectedMessage.test(msg);
+            if (expectedMessage instanceof RegExp) {
+                // a global/sticky RegExp keeps state between test() calls
+                expectedMessage.lastIndex = 0;
+                return expectedMessage.test(msg);
+            }
             return strict ? msg === expectedMessage : msg.includes(expectedMessage);
         };
 
-        const buffer = this.actual instanceof PlayerWrapper ? messageBuffer : serverConsoleBuffer;
-        const view = (): string[] => since !== undefined ? buffer.slice(since) : buffer;
+        if (this.actual instanceof PlayerWrapper) {
+            await this.expectLogged(this.actual._scope.messages, isMatch, since, timeout, expectedMessage, msg => msg);
+            return;
+        }
 
-        await this.pollAssertion(
-            () => view().some(isMatch),
-            () => `Expected NOT to receive message matching "${expectedMessage}", but received: "${view().find(isMatch)}"`,
-            () => `Expected message matching "${expectedMessage}" not received`,
-            { timeout, pollingRate }
-        );
+        const levels = level === undefined ? undefined : Array.isArray(level) ? level : [level];
+        const isConsoleMatch = (line: ConsoleLine): boolean =>
+            (levels === undefined || (line.level !== undefined && levels.includes(line.level))) &&
+            (logger === undefined || line.logger === logger) &&
+            // strict compares the message alone, partial and RegExp matches also see the prefixes
+            (strict ? isMatch(line.message) : isMatch(line.message) || isMatch(line.raw));
+        await this.expectLogged(this.actual._scope.console, isConsoleMatch, since, timeout, expectedMessage, line => line.raw);
+    }
+
+    private async expectLogged<L>(
+        log: MessageLog<L>,
+        isMatch: (line: L) => boolean,
+        since: number,
+        timeout: number,
+        expectedMessage: string | RegExp,
+        describe: (line: L) => string
+    ): Promise<void> {
+        if (this.isNot) {
+            // a received message can't disappear again, one check is enough
+            const received = log.find(isMatch, since);
+            this._assert(
+                received !== undefined,
+                `Expected NOT to receive message matching "${expectedMessage}", but received: "${received === undefined ? '' : describe(received)}"`,
+                `Expected message matching "${expectedMessage}" not received`
+            );
+            return;
+        }
+
+        const received = await log.waitFor(isMatch, { from: since, timeout });
+        if (received === undefined) {
+            throw new Error(`Expected message matching "${expectedMessage}" not received`);
+        }
     }
 
     async toContainItem(
@@ -167,6 +211,38 @@ export class RunnerMatchers<T = unknown> extends Matchers<T> {
     ): Promise<void> {
         return this.toBeNear(x, undefined, z, options);
     }
+
+    /**
+     * Asserts that no server tick since the test started took `maxMspt` ms or longer.
+     * Needs the test agent on a server with Paper's tick events, elsewhere only tick intervals
+     * are known, which never drop below 50ms, and the matcher fails instead of guessing.
+     *
+     * The agent keeps one sampling window for the whole server. Any sample, from the background
+     * interval or taken by another test when it starts, ends or calls this matcher, closes it for
+     * every test running at that moment. A test still sees the ticks of its whole run, only split
+     * into more windows, and ticks slowed down by concurrent tests count for it as well.
+     */
+    async toKeepMsptBelow(
+        this: RunnerMatchers<ServerWrapper>,
+        maxMspt: number
+    ): Promise<void> {
+        const sampled = await sampleMetrics();
+        const samples = this.actual._scope.metrics.filter(sample => sample.ticks > 0);
+        if (!sampled && samples.length === 0) {
+            throw new Error('toKeepMsptBelow needs server metrics, enable the test agent and keep metricsInterval above 0');
+        }
+        if (samples.some(sample => !sample.exact)) {
+            throw new Error('toKeepMsptBelow needs exact tick durations, which only Paper reports. This server only reports the interval between ticks, which is never below 50ms');
+        }
+
+        const worst = Math.max(0, ...samples.map(sample => sample.maxMspt));
+        const ticks = samples.reduce((sum, sample) => sum + sample.ticks, 0);
+        this._assert(
+            worst < maxMspt,
+            `Expected a tick to take at least ${maxMspt}ms, but the longest of ${ticks} tick(s) took ${worst.toFixed(1)}ms`,
+            `Expected all ticks to take less than ${maxMspt}ms, but the longest of ${ticks} tick(s) took ${worst.toFixed(1)}ms`
+        );
+    }
 }
 
 interface PollOptions {
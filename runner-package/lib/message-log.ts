@@ -0,0 +1,118 @@
+import { createWriteStream, mkdirSync, WriteStream } from 'fs';
+import { dirname } from 'path';
+
+type Listener<T> = (line: T, index: number) => void;
+
+/** Lines kept in memory per log unless CAPTURE_BUFFER_SIZE says otherwise. */
+const DEFAULT_CAPACITY = 10000;
+
+function defaultCapacity(): number {
+    const configured = parseInt(process.env.CAPTURE_BUFFER_SIZE || '', 10);
+    return configured > 0 ? configured : DEFAULT_CAPACITY;
+}
+
+/**
+ * Captured lines in a fixed-size ring buffer that notifies subscribers of every new line,
+ * so waiting code is woken up by the line it waits for instead of polling.
+ *
+ * Every line gets a sequence number that keeps increasing when old lines are overwritten,
+ * so indexes taken with {@link length} stay valid. Optionally all lines are also appended
+ * to a file, to keep the full log of noisy tests.
+ */
+export class MessageLog<T = string> {
+    private readonly ring: T[];
+    private readonly listeners = new Set<Listener<T>>();
+    private readonly spill?: WriteStream;
+    private readonly toText: (line: T) => string;
+    private next = 0;
+
+    constructor(options: { capacity?: number; spillFile?: string; toText?: (line: T) => string } = {}) {
+        this.ring = new Array(options.capacity ?? defaultCapacity());
+        this.toText = options.toText ?? String;
+        if (options.spillFile) {
+            mkdirSync(dirname(options.spillFile), { recursive: true });
+            this.spill = createWriteStream(options.spillFile, { flags: 'a' });
+        }
+    }
+
+    /** Sequence number the next pushed line gets. */
+    get length(): number {
+        return this.next;
+    }
+
+    /** Sequence number of the oldest line still held in memory. */
+    get first(): number {
+        return Math.max(0, this.next - this.ring.length);
+    }
+
+    push(line: T): void {
+        const index = this.next++;
+        this.ring[index % this.ring.length] = line;
+        this.spill?.write(this.toText(line) + '\n');
+        for (const listener of this.listeners) {
+            listener(line, index);
+        }
+    }
+
+    /**
+     * Calls `listener` for every line pushed from now on. Returns a function removing the listener.
+     */
+    subscribe(listener: Listener<T>): () => void {
+        this.listeners.add(listener);
+        return () => this.listeners.delete(listener);
+    }
+
+    /**
+     * Returns the first line at or after index `from` matching `predicate`.
+     * Lines already dropped from the ring buffer are skipped.
+     */
+    find(predicate: (line: T) => boolean, from: number = 0): T | undefined {
+        for (let i = Math.max(this.first, from); i < this.next; i++) {
+            const line = this.ring[i % this.ring.length];
+            if (predicate(line)) return line;
+        }
+        return undefined;
+    }
+
+    /**
+     * Resolves with the first line at or after index `from` matching `predicate`, waiting
+     * for new lines when none matches yet. Lines already captured are checked once, after that
+     * only new lines are, in the order they arrive. Resolves with `undefined` on timeout.
+     */
+    waitFor(
+        predicate: (line: T) => boolean,
+        options: { from?: number; timeout?: number; signal?: AbortSignal } = {}
+    ): Promise<T | undefined> {
+        const { from = 0, timeout = 5000, signal } = options;
+
+        const existing = this.find(predicate, from);
+        if (existing !== undefined || signal?.aborted) {
+            return Promise.resolve(existing);
+        }
+
+        return new Promise(resolve => {
+            const finish = (line: T | undefined): void => {
+                clearTimeout(timer);
+                unsubscribe();
+                signal?.removeEventListener('abort', onAbort);
+                resolve(line);
+            };
+            const onAbort = (): void => finish(undefined);
+
+            const timer = setTimeout(() => finish(undefined), timeout);
+            const unsubscribe = this.subscribe((line, index) => {
+                if (index >= from && predicate(line)) finish(line);
+            });
+            signal?.addEventListener('abort', onAbort, { once: true });
+        });
+    }
+
+    /**
+     * Flushes and closes the spill file, if any.
+     */
+    close(): Promise<void> {
+        const spill = this.spill;
+        if (!spill || spill.writableEnded) return Promise.resolve();
+        return new Promise(resolve => spill.end(resolve));
+    }
+}
@@ -0,0 +1,98 @@
+import pc from 'picocolors';
+import type { AgentClient } from './agent-client.js';
+import { openTestScopes } from './test-scope.js';
+
+/**
+ * Server statistics of one sampling window, as measured by the test agent.
+ */
+export interface MetricsSample {
+    /** Whether tick durations came from Paper's tick events, otherwise they are tick intervals. */
+    exact: boolean;
+    elapsedMs: number;
+    ticks: number;
+    avgMspt: number;
+    maxMspt: number;
+    tps: number;
+    heapUsedMb: number;
+    heapMaxMb: number;
+    /** Garbage collections during the window and the time they took. */
+    gcCount: number;
+    gcMs: number;
+}
+
+export interface MetricsSummary {
+    samples: number;
+    exact: boolean;
+    avgMspt: number;
+    maxMspt: number;
+    minTps: number;
+    maxHeapMb: number;
+    gcCount: number;
+    gcMs: number;
+}
+
+let agentOf: (() => AgentClient | undefined) | undefined;
+let timer: ReturnType<typeof setInterval> | undefined;
+let queue: Promise<boolean> = Promise.resolve(false);
+let warned = false;
+
+/**
+ * Samples the server every `intervalMs` while the agent is connected. Every sample is added to
+ * all tests running at that moment, tests running concurrently share their samples.
+ */
+export function startMetricsSampling(agent: () => AgentClient | undefined, intervalMs: number): void {
+    if (intervalMs <= 0) return;
+    agentOf = agent;
+    timer = setInterval(() => void sampleMetrics(), intervalMs);
+    timer.unref();
+}
+
+export function stopMetricsSampling(): void {
+    clearInterval(timer);
+    timer = undefined;
+    agentOf = undefined;
+}
+
+/**
+ * Takes a sample right away, so it covers everything up to now. Samples are taken one after
+ * another, each closes the window of the previous one. Resolves false when sampling is off.
+ */
+export function sampleMetrics(): Promise<boolean> {
+    queue = queue.then(takeSample);
+    return queue;
+}
+
+async function takeSample(): Promise<boolean> {
+    const agent = agentOf?.();
+    if (!agent?.connected) return false;
+    try {
+        const sample = await agent.call<MetricsSample>('metrics');
+        for (const scope of openTestScopes()) {
+            scope.metrics.push(sample);
+        }
+        return true;
+    } catch (err) {
+        if (!warned) {
+            warned = true;
+            console.log(pc.yellow(`[runner] Could not sample server metrics: ${(err as Error).message}`));
+        }
+        return false;
+    }
+}
+
+export function summarizeMetrics(samples: MetricsSample[]): MetricsSummary | undefined {
+    const withTicks = samples.filter(sample => sample.ticks > 0);
+    if (withTicks.length === 0) return undefined;
+
+    const ticks = withTicks.reduce((sum, sample) => sum + sample.ticks, 0);
+    return {
+        samples: samples.length,
+        exact: withTicks.every(sample => sample.exact),
+        avgMspt: withTicks.reduce((sum, sample) => sum + sample.avgMspt * sample.ticks, 0) / ticks,
+        maxMspt: Math.max(...withTicks.map(sample => sample.maxMspt)),
+        minTps: Math.min(...withTicks.map(sample => sample.tps)),
+        maxHeapMb: Math.max(...samples.map(sample => sample.heapUsedMb)),
+        gcCount: samples.reduce((sum, sample) => sum + sample.gcCount, 0),
+        gcMs: samples.reduce((sum, sample) => sum + sample.gcMs, 0),
+    };
+}
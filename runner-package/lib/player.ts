@@ -1,8 +1,10 @@
 import { Bot } from 'mineflayer';
 import { ItemWrapper, GuiWrapper, createPlayerExtensions, Window, LiveGuiHandle } from './wrappers.js';
 import { ServerWrapper } from './server.js';
-import { activeBots, messageBuffer, disconnectBot, createBot } from './bot-utils.js';
+import { disconnectBot, createBot } from './bot-utils.js';
+import { currentScope, TestScope } from './test-scope.js';
 import { poll } from './utils.js';
+import { recordCommand } from './coverage.js';
 import { randomUUID } from 'node:crypto';
 import pc from 'picocolors';
 
@@ -38,8 +40,14 @@ export class PlayerWrapper {
     private _spawnPromise: Promise<void> | null = null;
     private _listenersBot: Bot | null = null;
 
-    constructor(bot: Bot) {
+    /**
+     * @internal Scope of the test using this player, its messages are only visible to that test.
+     */
+    _scope: TestScope;
+
+    constructor(bot: Bot, scope: TestScope = currentScope()) {
         this.bot = bot;
+        this._scope = scope;
         this._bindExtensions(bot);
     }
 
@@ -120,7 +128,8 @@ export class PlayerWrapper {
         bot.on('message', (jsonMsg: unknown) => {
             const message = String(jsonMsg);
             console.log(pc.dim(`[Bot ${botUsername}] Received message: "${message}"`));
-            messageBuffer.push(message);
+            // read on every message, pooled players move between test scopes
+            this._scope.messages.push(message);
         });
 
         bot.on('windowOpen', (window: unknown) => {
@@ -138,6 +147,14 @@ export class PlayerWrapper {
         this.serverWrapper = server;
     }
 
+    /**
+     * @internal Hands a pooled player over to another test.
+     */
+    _attach(scope: TestScope, server: ServerWrapper): void {
+        this._scope = scope;
+        this.serverWrapper = server;
+    }
+
     getCurrentGui(): GuiWrapper | null {
         let currentWindow = this.bot.currentWindow;
         return currentWindow ? new GuiWrapper(this.bot, currentWindow as Window) : null;
@@ -145,11 +162,12 @@ export class PlayerWrapper {
 
     chat(message: string): void {
         console.log(`${pc.cyan('[Bot]')} ${pc.dim(`Chatting: ${message}`)}`);
+        if (message.startsWith('/')) recordCommand(message);
         this.bot.chat(message);
     }
 
     getMessageBufferIndex(): number {
-        return messageBuffer.length;
+        return this._scope.messages.length;
     }
 
     nextMessage(options: { timeout?: number } = {}): Promise<string> {
@@ -172,12 +190,16 @@ export class PlayerWrapper {
 
     async makeOp(): Promise<void> {
         this.requireServer();
+        if (this.serverWrapper!.agent) {
+            await this.serverWrapper!.dispatch(`minecraft:op ${this.username}`);
+            return;
+        }
         this.serverWrapper!.execute(`minecraft:op ${this.username}`);
 
-        await poll(
-            () => messageBuffer.find(m => m.includes(`Made ${this.username} a server operator`)),
-            { message: `Player ${this.username} was not opped` }
-        );
+        const confirmation = await this._scope.messages.waitFor(m => m.includes(`Made ${this.username} a server operator`));
+        if (confirmation === undefined) {
+            throw new Error(`Timeout: Player ${this.username} was not opped`);
+        }
     }
 
     async deOp(): Promise<void> {
@@ -187,7 +209,8 @@ export class PlayerWrapper {
     async setGameMode(mode: 'survival' | 'creative' | 'adventure' | 'spectator'): Promise<void> {
         if (this.bot.game.gameMode === mode) return;
         this.requireServer();
-        this.serverWrapper!.execute(`minecraft:gamemode ${mode} ${this.username}`);
+        // acknowledged by the agent, the client may still be a packet behind
+        await this.serverWrapper!.dispatch(`minecraft:gamemode ${mode} ${this.username}`);
 
         await poll(
             () => this.bot.game.gameMode === mode ? true : undefined,
@@ -197,7 +220,7 @@ export class PlayerWrapper {
 
     async teleport(x: number, y: number, z: number): Promise<void> {
         this.requireServer();
-        this.serverWrapper!.execute(`minecraft:tp ${this.username} ${x} ${y} ${z}`);
+        await this.serverWrapper!.dispatch(`minecraft:tp ${this.username} ${x} ${y} ${z}`);
 
         await poll(
             () => {
@@ -227,8 +250,9 @@ export class PlayerWrapper {
 
         await disconnectBot(oldBot, botUsername);
 
-        const idx = activeBots.indexOf(oldBot);
-        if (idx !== -1) activeBots.splice(idx, 1);
+        const bots = this._scope.bots;
+        const idx = bots.indexOf(oldBot);
+        if (idx !== -1) bots.splice(idx, 1);
 
         const newBot = createBot({
             host: this._botOptions.host,
@@ -236,7 +260,7 @@ export class PlayerWrapper {
             username: botUsername,
             version: this._botOptions.version,
             auth: this._botOptions.auth,
-        });
+        }, this._scope);
 
         this.bot = newBot;
         this._listenersBot = null;
@@ -247,15 +271,15 @@ export class PlayerWrapper {
         try {
             await this.join(options);
         } catch (err) {
-            const idx = activeBots.indexOf(this.bot);
-            if (idx !== -1) activeBots.splice(idx, 1);
+            const idx = bots.indexOf(this.bot);
+            if (idx !== -1) bots.splice(idx, 1);
             throw err;
         }
     }
 
     async giveItem(item: string, count: number = 1): Promise<void> {
         this.requireServer();
-        this.serverWrapper!.execute(`minecraft:give ${this.username} ${item} ${count}`);
+        await this.serverWrapper!.dispatch(`minecraft:give ${this.username} ${item} ${count}`);
 
         await poll(
             () => {
@@ -276,13 +300,18 @@ export class PlayerWrapper {
 
     private async executeAndSync(cmd: string): Promise<void> {
         this.requireServer();
+        if (this.serverWrapper!.agent) {
+            await this.serverWrapper!.dispatch(cmd);
+            return;
+        }
+
         const syncId = `sync_${randomUUID().split('-')[0]}`;
         this.serverWrapper!.execute(cmd);
         this.serverWrapper!.execute(`minecraft:say ${syncId}`);
 
-        await poll(
-            () => messageBuffer.find(m => m.includes(syncId)),
-            { message: `Server command sync timed out for: ${cmd}` }
-        );
+        const marker = await this._scope.messages.waitFor(m => m.includes(syncId));
+        if (marker === undefined) {
+            throw new Error(`Timeout: Server command sync timed out for: ${cmd}`);
+        }
     }
 }
\ No newline at end of file
@@ -0,0 +1,105 @@
+import { Socket } from 'net';
+import { sleep } from './utils.js';
+
+function varInt(value: number): Buffer {
+    const bytes: number[] = [];
+    let remaining = value >>> 0;
+    do {
+        let byte = remaining & 0x7f;
+        remaining >>>= 7;
+        if (remaining !== 0) byte |= 0x80;
+        bytes.push(byte);
+    } while (remaining !== 0);
+    return Buffer.from(bytes);
+}
+
+function packet(id: number, ...fields: Buffer[]): Buffer {
+    const body = Buffer.concat([varInt(id), ...fields]);
+    return Buffer.concat([varInt(body.length), body]);
+}
+
+function mcString(value: string): Buffer {
+    const bytes = Buffer.from(value, 'utf8');
+    return Buffer.concat([varInt(bytes.length), bytes]);
+}
+
+/** Reads a VarInt at `offset`, or returns undefined if the buffer ends before it does. */
+function readVarInt(buffer: Buffer, offset: number): { value: number; size: number } | undefined {
+    let value = 0;
+    for (let i = 0; i < 5; i++) {
+        if (offset + i >= buffer.length) return undefined;
+        const byte = buffer[offset + i];
+        value |= (byte & 0x7f) << (7 * i);
+        if ((byte & 0x80) === 0) return { value, size: i + 1 };
+    }
+    throw new Error('VarInt too long');
+}
+
+/**
+ * Sends a server list ping, the status request clients send before showing a server.
+ * Resolves with the status JSON once the server answers, it only does when it accepts connections.
+ */
+export function pingServer(host: string, port: number, timeoutMs: number = 1000): Promise<any> {
+    return new Promise((resolve, reject) => {
+        const socket = new Socket();
+        let received = Buffer.alloc(0);
+
+        const fail = (err: Error): void => {
+            socket.destroy();
+            reject(err);
+        };
+
+        socket.setTimeout(timeoutMs, () => fail(new Error(`Status ping timed out after ${timeoutMs}ms`)));
+        socket.once('error', fail);
+
+        socket.connect(port, host, () => {
+            const portBytes = Buffer.alloc(2);
+            portBytes.writeUInt16BE(port);
+            // handshake with next state 1 (status), the protocol version doesn't matter for a status request
+            socket.write(packet(0x00, varInt(-1), mcString(host), portBytes, varInt(1)));
+            socket.write(packet(0x00));
+        });
+
+        socket.on('data', (chunk: Buffer) => {
+            received = Buffer.concat([received, chunk]);
+            try {
+                const length = readVarInt(received, 0);
+                if (!length || received.length < length.size + length.value) return;
+
+                const id = readVarInt(received, length.size)!;
+                const jsonLength = readVarInt(received, length.size + id.size)!;
+                const start = length.size + id.size + jsonLength.size;
+                const json = received.subarray(start, start + jsonLength.value).toString('utf8');
+                socket.destroy();
+                resolve(JSON.parse(json));
+            } catch (err) {
+                fail(err as Error);
+            }
+        });
+    });
+}
+
+/**
+ * Pings the server until it answers a status request, or throws once `timeoutMs` elapsed.
+ */
+export async function waitForServerReady(
+    host: string,
+    port: number,
+    options: { timeout?: number; interval?: number } = {}
+): Promise<void> {
+    const { timeout = 30000, interval = 100 } = options;
+    const deadline = Date.now() + timeout;
+    let lastError: Error | undefined;
+
+    while (Date.now() < deadline) {
+        try {
+            await pingServer(host, port, Math.min(1000, Math.max(1, deadline - Date.now())));
+            return;
+        } catch (err) {
+            lastError = err as Error;
+        }
+        await sleep(interval);
+    }
+
+    throw new Error(`Server on ${host}:${port} did not answer a status ping within ${timeout}ms: ${lastError?.message}`);
+}
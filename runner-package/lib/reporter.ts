@@ -1,6 +1,8 @@
 import pc from 'picocolors';
 import { extractSpecLocation } from './stack-trace.js';
+import { printLoadReport } from './load-test.js';
 import type { TestResult } from './types.js';
+import type { MetricsSummary } from './metrics.js';
 
 export function formatDuration(ms: number): string {
     if (ms < 1000) return `${ms}ms`;
@@ -8,6 +10,18 @@ export function formatDuration(ms: number): string {
     return `${seconds.toFixed(1)}s`;
 }
 
+function metricsCells(metrics: MetricsSummary | undefined): string[] {
+    if (!metrics) return ['-', '-', '-', '-'];
+    // without Paper's tick events the numbers are tick intervals, marked with ~
+    const approx = metrics.exact ? '' : '~';
+    return [
+        `${approx}${metrics.avgMspt.toFixed(1)}/${metrics.maxMspt.toFixed(1)}ms`,
+        metrics.minTps.toFixed(1),
+        `${Math.round(metrics.maxHeapMb)}MB`,
+        `${metrics.gcCount}x ${metrics.gcMs}ms`,
+    ];
+}
+
 export function printTestSummary(testResults: TestResult[]): number {
     console.log(`\n${pc.bold('═'.repeat(40))}`);
     console.log(pc.bold('  Test Summary'));
@@ -30,25 +44,43 @@ export function printTestSummary(testResults: TestResult[]): number {
     const durationWidth = Math.max(durationCol.length, ...testResults.map(r => formatDuration(r.durationMs).length));
     const testWidth = Math.max(testCol.length, ...testResults.map(r => r.testName.length));
 
-    const header = `  ${pc.dim(`${statusCol.padEnd(statusWidth)}  ${testCol.padEnd(testWidth)}  ${durationCol.padStart(durationWidth)}`)}`;
-    const separator = `  ${pc.dim(`${'─'.repeat(statusWidth)}  ${'─'.repeat(testWidth)}  ${'─'.repeat(durationWidth)}`)}`;
+    // server metrics columns, only shown when the agent sampled them
+    const showMetrics = testResults.some(r => r.metrics);
+    const metricsCols = ['MSPT avg/max', 'Min TPS', 'Heap', 'GC'];
+    const metricsRows = testResults.map(r => metricsCells(r.metrics));
+    const metricsWidths = metricsCols.map((col, i) => Math.max(col.length, ...metricsRows.map(cells => cells[i].length)));
+    const metricsPart = (cells: string[]) => showMetrics
+        ? '  ' + cells.map((cell, i) => cell.padStart(metricsWidths[i])).join('  ')
+        : '';
+
+    const header = `  ${pc.dim(`${statusCol.padEnd(statusWidth)}  ${testCol.padEnd(testWidth)}  ${durationCol.padStart(durationWidth)}${metricsPart(metricsCols)}`)}`;
+    const separator = `  ${pc.dim(`${'─'.repeat(statusWidth)}  ${'─'.repeat(testWidth)}  ${'─'.repeat(durationWidth)}${metricsPart(metricsWidths.map(w => '─'.repeat(w)))}`)}`;
 
     console.log(`\n${header}`);
     console.log(separator);
 
-    for (const result of testResults) {
+    for (const [index, result] of testResults.entries()) {
         const status = result.passed ? 'PASS' : 'FAIL';
         const statusPadded = status.padEnd(statusWidth);
         const coloredStatus = result.passed
             ? pc.green(pc.bold(statusPadded))
             : pc.red(pc.bold(statusPadded));
         const duration = formatDuration(result.durationMs);
-        console.log(`  ${coloredStatus}  ${result.testName.padEnd(testWidth)}  ${pc.dim(duration.padStart(durationWidth))}`);
+        console.log(`  ${coloredStatus}  ${result.testName.padEnd(testWidth)}  ${pc.dim(duration.padStart(durationWidth))}${pc.dim(metricsPart(metricsRows[index]))}`);
     }
 
     console.log(separator);
     console.log(`  ${''.padEnd(statusWidth)}  ${pc.bold('Total'.padEnd(testWidth))}  ${pc.dim(formatDuration(totalDuration).padStart(durationWidth))}`);
 
+    const loadTests = testResults.filter(r => r.load);
+    if (loadTests.length > 0) {
+        console.log(`\n${pc.bold('Load Tests:')}`);
+        for (const result of loadTests) {
+            console.log(`\n  ${result.passed ? pc.green(result.testName) : pc.red(result.testName)}`);
+            printLoadReport(result.load!);
+        }
+    }
+
     if (failed.length > 0) {
         console.log(`\n${pc.red(pc.bold('Failed Tests:'))}\n`);
 
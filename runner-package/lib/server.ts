@@ -1,7 +1,106 @@
+import { currentScope, TestScope } from './test-scope.js';
+import type { AgentClient } from './agent-client.js';
+import type { CommandChannel } from './command-channel.js';
+import { recordCommand } from './coverage.js';
+
+export interface AgentPlayerState {
+    name: string;
+    uuid: string;
+    op: boolean;
+    gameMode: 'survival' | 'creative' | 'adventure' | 'spectator';
+    health: number;
+    foodLevel: number;
+    world: string | null;
+    x: number;
+    y: number;
+    z: number;
+}
+
+export interface AgentInventoryItem {
+    slot: number;
+    /** Namespaced material, like `minecraft:diamond`. */
+    type: string;
+    amount: number;
+    displayName?: string;
+    lore?: string[];
+}
+
 export class ServerWrapper {
+    /**
+     * Queues a console command without waiting for it, commands of the same tick are written together.
+     */
     execute: (cmd: string) => void;
 
-    constructor(executeFn: (cmd: string) => void) {
-        this.execute = executeFn;
+    /**
+     * @internal Scope of the test that owns this wrapper, holding the console output seen by that test.
+     */
+    readonly _scope: TestScope;
+
+    /**
+     * Connection to the test agent plugin, undefined when the agent is disabled or didn't start.
+     */
+    readonly agent?: AgentClient;
+
+    private readonly commands: CommandChannel;
+
+    constructor(commands: CommandChannel, agent?: AgentClient) {
+        this.commands = commands;
+        this.execute = cmd => {
+            recordCommand(cmd);
+            commands.send(cmd);
+        };
+        this._scope = currentScope();
+        this.agent = agent?.connected ? agent : undefined;
+    }
+
+    /**
+     * Runs a console command and resolves once the server executed it.
+     * Without the agent, commands dispatched together share one write and one acknowledgement,
+     * but whether the command succeeded isn't known.
+     */
+    async dispatch(cmd: string): Promise<void> {
+        recordCommand(cmd);
+        if (!this.agent) {
+            await this.commands.sendAndWait(cmd);
+            return;
+        }
+        const handled = await this.agent.call<boolean>('execute', { command: cmd });
+        if (!handled) {
+            throw new Error(`Server did not handle command: ${cmd}`);
+        }
+    }
+
+    getPlayer(player: string): Promise<AgentPlayerState> {
+        return this.requireAgent().call('player', { player });
+    }
+
+    getInventory(player: string): Promise<AgentInventoryItem[]> {
+        return this.requireAgent().call('inventory', { player });
+    }
+
+    hasPermission(player: string, permission: string): Promise<boolean> {
+        return this.requireAgent().call('hasPermission', { player, permission });
+    }
+
+    /**
+     * Balance of the economy plugin registered with Vault.
+     */
+    getBalance(player: string): Promise<number> {
+        return this.requireAgent().call('balance', { player });
+    }
+
+    /**
+     * Value at `path` of a plugin's `getConfig()`, or of a YAML `file` in its data folder.
+     * Configuration sections are returned as objects, omit `path` for the whole file.
+     */
+    getConfigValue<T = unknown>(plugin: string, path?: string, options: { file?: string } = {}): Promise<T> {
+        return this.requireAgent().call('config', { plugin, path, ...options });
+    }
+
+    private requireAgent(): AgentClient {
+        if (!this.agent) {
+            throw new Error('The test agent is not available, enable it with e2e { agent.set(true) }');
+        }
+        return this.agent;
     }
-}
\ No newline at end of file
+}
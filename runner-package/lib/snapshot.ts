@@ -0,0 +1,96 @@
+import { constants } from 'fs';
+import { copyFile, mkdir, readdir, readlink, rm, symlink } from 'fs/promises';
+import { join } from 'path';
+import pc from 'picocolors';
+
+/** Directory inside the run dir holding the snapshot. */
+const SNAPSHOT_DIR = '.paper-e2e-snapshot';
+
+/**
+ * Entries never part of a snapshot: Paperclip output and logs don't change
+ * between tests, worker dirs have snapshots of their own.
+ */
+const EXCLUDED_ENTRIES = new Set([SNAPSHOT_DIR, '.workers', 'cache', 'libraries', 'versions', 'logs']);
+
+/** Held open by the running server, and recreated on every start anyway. */
+const LOCK_FILE = 'session.lock';
+
+/** Directory holding the snapshot of `serverDir`, it mirrors the run dir. */
+export function snapshotDirOf(serverDir: string): string {
+    return join(serverDir, SNAPSHOT_DIR);
+}
+
+function isSnapshotted(name: string): boolean {
+    // the server jar stays in place, it's never modified by tests
+    return !EXCLUDED_ENTRIES.has(name) && !name.endsWith('.jar');
+}
+
+/**
+ * Copies a directory tree, cloning files where the file system supports
+ * copy-on-write (btrfs, XFS, APFS, ReFS) and falling back to a regular copy elsewhere.
+ */
+async function cloneTree(source: string, destination: string): Promise<void> {
+    await mkdir(destination, { recursive: true });
+    for (const entry of await readdir(source, { withFileTypes: true })) {
+        if (entry.name === LOCK_FILE) continue;
+        const from = join(source, entry.name);
+        const to = join(destination, entry.name);
+        if (entry.isDirectory()) {
+            await cloneTree(from, to);
+        } else if (entry.isSymbolicLink()) {
+            await symlink(await readlink(from), to);
+        } else if (entry.isFile()) {
+            await copyFile(from, to, constants.COPYFILE_FICLONE);
+        }
+    }
+}
+
+/**
+ * Captures the worlds, plugin data and config files of a run dir. The server
+ * has to have flushed its worlds to disk (`save-all flush`) before.
+ */
+export async function captureSnapshot(serverDir: string): Promise<void> {
+    const startTime = Date.now();
+    const snapshotDir = snapshotDirOf(serverDir);
+    await rm(snapshotDir, { recursive: true, force: true });
+    await mkdir(snapshotDir, { recursive: true });
+
+    for (const entry of await readdir(serverDir, { withFileTypes: true })) {
+        if (!isSnapshotted(entry.name)) continue;
+        const source = join(serverDir, entry.name);
+        const destination = join(snapshotDir, entry.name);
+        if (entry.isDirectory()) {
+            await cloneTree(source, destination);
+        } else if (entry.isFile()) {
+            await copyFile(source, destination, constants.COPYFILE_FICLONE);
+        }
+    }
+
+    console.log(pc.dim(`[Snapshot] Captured run dir in ${Date.now() - startTime}ms`));
+}
+
+/**
+ * Puts the run dir back into the state of the last {@link captureSnapshot}.
+ * The server must be stopped, worlds are only read on startup.
+ */
+export async function restoreSnapshot(serverDir: string): Promise<void> {
+    const startTime = Date.now();
+    const snapshotDir = snapshotDirOf(serverDir);
+
+    for (const entry of await readdir(serverDir, { withFileTypes: true })) {
+        if (!isSnapshotted(entry.name)) continue;
+        await rm(join(serverDir, entry.name), { recursive: true, force: true });
+    }
+
+    for (const entry of await readdir(snapshotDir, { withFileTypes: true })) {
+        const source = join(snapshotDir, entry.name);
+        const destination = join(serverDir, entry.name);
+        if (entry.isDirectory()) {
+            await cloneTree(source, destination);
+        } else if (entry.isFile()) {
+            await copyFile(source, destination, constants.COPYFILE_FICLONE);
+        }
+    }
+
+    console.log(pc.dim(`[Snapshot] Restored run dir in ${Date.now() - startTime}ms`));
+}
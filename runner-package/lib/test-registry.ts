@@ -1,4 +1,6 @@
 import type { TestContext } from './types.js';
+import { loadTestTimeout, runLoadTest } from './load-test.js';
+import type { LoadAction, LoadTestOptions } from './load-test.js';
 
 type Hook = (context: TestContext) => Promise<void>;
 
@@ -8,15 +10,31 @@ interface DescribeScope {
     afterHooks: Hook[];
 }
 
-interface TestCase {
+type TestFn = (context: TestContext) => Promise<void>;
+
+export interface TestCase {
     name: string;
-    fn: (context: TestContext) => Promise<void>;
+    fn: TestFn;
+    /** Whether the test may run at the same time as adjacent concurrent tests. */
+    concurrent: boolean;
+    /** Timeout in ms overriding TEST_TIMEOUT. */
+    timeout?: number;
+}
+
+interface TestFunction {
+    (name: string, fn: TestFn): void;
+    /**
+     * Registers a test that runs at the same time as the concurrent tests next to it,
+     * each with its own bots and message buffers. Only use it for tests that don't
+     * depend on shared server state changed by other tests.
+     */
+    concurrent: (name: string, fn: TestFn) => void;
 }
 
 export const testRegistry: TestCase[] = [];
 export const scopeStack: DescribeScope[] = [{ label: '', beforeHooks: [], afterHooks: [] }];
 
-export function test(name: string, fn: (context: TestContext) => Promise<void>): void {
+function registerTest(name: string, fn: TestFn, concurrent: boolean, timeout?: number): void {
     const labels = scopeStack.map(s => s.label).filter(l => l);
     const fullName = [...labels, name].join(' > ');
 
@@ -43,9 +61,14 @@ export function test(name: string, fn: (context: TestContext) => Promise<void>):
         if (testError) throw testError;
     };
 
-    testRegistry.push({ name: fullName, fn: wrappedFn });
+    testRegistry.push({ name: fullName, fn: wrappedFn, concurrent, timeout });
 }
 
+export const test: TestFunction = Object.assign(
+    (name: string, fn: TestFn): void => registerTest(name, fn, false),
+    { concurrent: (name: string, fn: TestFn): void => registerTest(name, fn, true) }
+);
+
 export function opTest(name: string, fn: (context: TestContext) => Promise<void>): void {
     test(name, async (context: TestContext) => {
         await context.player.makeOp();
@@ -53,6 +76,17 @@ export function opTest(name: string, fn: (context: TestContext) => Promise<void>
     });
 }
 
+/**
+ * Registers a test that logs in `options.bots` bots and has them run `action` at `options.rate`
+ * actions per second, reporting latency percentiles, throughput and error rate. It fails when
+ * `options.thresholds` are exceeded. The test's own `player` is the first bot.
+ */
+export function loadTest(name: string, options: LoadTestOptions, action: LoadAction): void {
+    registerTest(name, async (context: TestContext) => {
+        await runLoadTest(context, options, action);
+    }, false, loadTestTimeout(options));
+}
+
 export function describe(label: string, fn: () => void): void {
     scopeStack.push({ label, beforeHooks: [], afterHooks: [] });
     try {
@@ -0,0 +1,84 @@
+import { AsyncLocalStorage } from 'node:async_hooks';
+import { join } from 'path';
+import type { Bot } from 'mineflayer';
+import { MessageLog } from './message-log.js';
+import type { ConsoleLine } from './console-parser.js';
+import type { LoadReport } from './load-test.js';
+import type { MetricsSample } from './metrics.js';
+
+/**
+ * Per-test capture state. Every test runs inside its own scope, so tests running
+ * concurrently against the same server don't see each other's bots and messages.
+ */
+export interface TestScope {
+    /** Chat messages received by bots created in this scope. */
+    messages: MessageLog;
+    /** Server console lines printed while this scope was open. */
+    console: MessageLog<ConsoleLine>;
+    /** Bots created in this scope, disconnected when the test finishes. */
+    bots: Bot[];
+    /** Result of the load test running in this scope. */
+    loadReport?: LoadReport;
+    /** Server metrics sampled while this scope's test ran. */
+    metrics: MetricsSample[];
+}
+
+/**
+ * Creates a scope named `name`. When CAPTURE_SPILL_DIR is set, its full chat and console
+ * logs are also written there, the in-memory buffers only keep the latest lines.
+ */
+export function createScope(name: string): TestScope {
+    const spillDir = process.env.CAPTURE_SPILL_DIR;
+    const spillFile = (kind: string): string | undefined =>
+        spillDir ? join(spillDir, `${name.replace(/[^\w.-]+/g, '_')}.${kind}.log`) : undefined;
+
+    return {
+        messages: new MessageLog({ spillFile: spillFile('chat') }),
+        console: new MessageLog<ConsoleLine>({ spillFile: spillFile('console'), toText: line => line.raw }),
+        bots: [],
+        metrics: [],
+    };
+}
+
+/** Scope used outside of tests, e.g. for console output during server startup. */
+export const rootScope: TestScope = createScope('server');
+
+const storage = new AsyncLocalStorage<TestScope>();
+const openScopes = new Set<TestScope>();
+
+/**
+ * Returns the scope of the test the caller is running in, or the root scope outside of tests.
+ */
+export function currentScope(): TestScope {
+    return storage.getStore() ?? rootScope;
+}
+
+/**
+ * Runs `fn` with `scope` as the current scope. While it runs, the scope receives server console output.
+ */
+export async function runInScope<T>(scope: TestScope, fn: () => Promise<T>): Promise<T> {
+    openScopes.add(scope);
+    try {
+        return await storage.run(scope, fn);
+    } finally {
+        openScopes.delete(scope);
+        await Promise.all([scope.messages.close(), scope.console.close()]);
+    }
+}
+
+/**
+ * Scopes that should receive a server console line. Console output is shared by
+ * all tests running on the server, the root scope only collects it while no test runs.
+ */
+export function consoleScopes(): Iterable<TestScope> {
+    return openScopes.size > 0 ? openScopes : [rootScope];
+}
+
+/** Scopes of the tests running right now. */
+export function openTestScopes(): TestScope[] {
+    return [...openScopes];
+}
+
+export function allOpenScopes(): TestScope[] {
+    return [rootScope, ...openScopes];
+}
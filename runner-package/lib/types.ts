@@ -1,5 +1,7 @@
 import type { PlayerWrapper } from './player.js';
 import type { ServerWrapper } from './server.js';
+import type { LoadReport } from './load-test.js';
+import type { MetricsSummary } from './metrics.js';
 
 export interface TestContext {
     player: PlayerWrapper;
@@ -14,4 +16,8 @@ export interface TestResult {
     passed: boolean;
     durationMs: number;
     error?: Error;
+    /** Latencies and throughput, only set for load tests. */
+    load?: LoadReport;
+    /** Server tick times and memory while the test ran, only set when metrics were sampled. */
+    metrics?: MetricsSummary;
 }
\ No newline at end of file
@@ -131,4 +131,17 @@ export async function waitForStable(
         }
         await sleep(Math.min(interval, Math.max(0, stableDeadline - Date.now())), signal);
     }
-}
\ No newline at end of file
+}
+
+/**
+ * Runs `task` for indexes `0..count-1`, with at most `limit` of them in flight at once.
+ */
+export async function runWithConcurrency(count: number, limit: number, task: (index: number) => Promise<void>): Promise<void> {
+    let next = 0;
+    const lanes = Array.from({ length: Math.min(limit, count) }, async () => {
+        while (next < count) {
+            await task(next++);
+        }
+    });
+    await Promise.all(lanes);
+}
@@ -0,0 +1,187 @@
+import { spawn, ChildProcess } from 'child_process';
+import { cp, mkdir, readdir, readFile, rm, symlink, writeFile } from 'fs/promises';
+import { existsSync } from 'fs';
+import { basename, delimiter, join } from 'path';
+import { createInterface } from 'readline';
+import { fileURLToPath } from 'url';
+import pc from 'picocolors';
+import type { TestResult } from './types.js';
+
+/** Directory inside the run dir holding the cloned worker run dirs. */
+const WORKERS_DIR = '.workers';
+
+/**
+ * Entries extracted by Paperclip that are identical for every worker,
+ * linked instead of copied to keep cloning cheap.
+ */
+const SHARED_DIRECTORIES = new Set(['cache', 'libraries', 'versions']);
+
+/** Entries never copied into a worker run dir. */
+const SKIPPED_ENTRIES = new Set([WORKERS_DIR, 'logs']);
+
+interface SerializedResult extends Omit<TestResult, 'error'> {
+    error?: { message: string; stack?: string };
+}
+
+/**
+ * Writes the results of a worker so the coordinating runner can merge them.
+ */
+export async function writeWorkerResults(file: string, results: TestResult[]): Promise<void> {
+    const serialized: SerializedResult[] = results.map(result => ({
+        ...result,
+        error: result.error ? { message: result.error.message, stack: result.error.stack } : undefined,
+    }));
+    await writeFile(file, JSON.stringify(serialized), 'utf8');
+}
+
+async function readWorkerResults(file: string): Promise<TestResult[]> {
+    const serialized: SerializedResult[] = JSON.parse(await readFile(file, 'utf8'));
+    return serialized.map(result => {
+        let error: Error | undefined;
+        if (result.error) {
+            error = new Error(result.error.message);
+            error.stack = result.error.stack;
+        }
+        return { ...result, error };
+    });
+}
+
+/**
+ * Sets `key=value` in a server.properties file, creating the file if needed.
+ */
+export async function setServerProperty(file: string, key: string, value: string): Promise<void> {
+    const lines = existsSync(file) ? (await readFile(file, 'utf8')).split(/\r?\n/) : [];
+    const index = lines.findIndex(line => line.trim().startsWith(`${key}=`));
+    if (index !== -1) {
+        lines[index] = `${key}=${value}`;
+    } else {
+        lines.splice(lines.length && lines[lines.length - 1] === '' ? lines.length - 1 : lines.length, 0, `${key}=${value}`);
+    }
+    await writeFile(file, lines.join('\n'), 'utf8');
+}
+
+/**
+ * Clones the prepared run dir for a single worker and points it at its own port.
+ */
+async function prepareWorkerDir(serverDir: string, workerId: number, port: number): Promise<string> {
+    const workerDir = join(serverDir, WORKERS_DIR, `worker-${workerId}`);
+    await rm(workerDir, { recursive: true, force: true });
+    await mkdir(workerDir, { recursive: true });
+
+    for (const entry of await readdir(serverDir, { withFileTypes: true })) {
+        if (SKIPPED_ENTRIES.has(entry.name)) continue;
+        const source = join(serverDir, entry.name);
+        const destination = join(workerDir, entry.name);
+        if (entry.isDirectory() && SHARED_DIRECTORIES.has(entry.name)) {
+            await symlink(source, destination, process.platform === 'win32' ? 'junction' : 'dir');
+        } else {
+            await cp(source, destination, { recursive: true });
+        }
+    }
+
+    await setServerProperty(join(workerDir, 'server.properties'), 'server-port', String(port));
+    return workerDir;
+}
+
+/**
+ * Splits spec files round-robin into at most `workers` shards, dropping empty ones.
+ */
+export function shardSpecFiles(files: string[], workers: number): string[][] {
+    const shards: string[][] = Array.from({ length: workers }, () => []);
+    files.forEach((file, index) => shards[index % workers].push(file));
+    return shards.filter(shard => shard.length > 0);
+}
+
+function pipeWithPrefix(stream: NodeJS.ReadableStream, prefix: string, target: NodeJS.WriteStream): void {
+    const lines = createInterface({ input: stream, crlfDelay: Infinity });
+    lines.on('line', line => target.write(`${prefix} ${line}\n`));
+}
+
+function killWorker(child: ChildProcess): void {
+    if (!child.pid || child.exitCode !== null) return;
+    try {
+        if (process.platform === 'win32') {
+            spawn('taskkill', ['/F', '/T', '/PID', String(child.pid)], { stdio: 'ignore', windowsHide: true })
+                .on('error', () => { /* best effort */ });
+        } else {
+            // the worker runner kills its own Paper server on SIGTERM
+            child.kill('SIGTERM');
+        }
+    } catch {
+        /* best effort */
+    }
+}
+
+/**
+ * Runs spec files on `workers` Paper servers at once, each with its own cloned
+ * run dir and port, and returns the merged results of all workers.
+ */
+export async function runWorkerPool(options: {
+    serverDir: string;
+    specFiles: string[];
+    workers: number;
+    basePort: number;
+}): Promise<TestResult[]> {
+    const { serverDir, specFiles, workers, basePort } = options;
+    const shards = shardSpecFiles(specFiles, workers);
+    const cliPath = fileURLToPath(new URL('../cli.js', import.meta.url));
+
+    console.log(pc.bold(`Running ${specFiles.length} test file(s) on ${shards.length} worker(s)\n`));
+
+    const children: ChildProcess[] = [];
+    const killAll = (): void => children.forEach(killWorker);
+    const onSignal = (): void => {
+        killAll();
+        setTimeout(() => process.exit(1), 500).unref();
+    };
+    process.once('exit', killAll);
+    process.once('SIGINT', onSignal);
+    process.once('SIGTERM', onSignal);
+
+    try {
+        const results = await Promise.all(shards.map(async (shard, index) => {
+            const workerId = index + 1;
+            const port = basePort + index;
+            const workerDir = await prepareWorkerDir(serverDir, workerId, port);
+            const resultsFile = join(workerDir, 'paper-e2e-results.json');
+            const prefix = pc.magenta(`[w${workerId}]`);
+
+            console.log(`${prefix} ${pc.dim(`port ${port}, ${shard.length} file(s): ${shard.map(file => basename(file)).join(', ')}`)}`);
+
+            const child = spawn(process.execPath, [cliPath], {
+                cwd: process.cwd(),
+                stdio: ['pipe', 'pipe', 'pipe'],
+                env: {
+                    ...process.env,
+                    SERVER_DIR: workerDir,
+                    SERVER_PORT: String(port),
+                    WORKERS: '1',
+                    PAPER_E2E_WORKER_ID: String(workerId),
+                    PAPER_E2E_SPEC_FILES: shard.join(delimiter),
+                    PAPER_E2E_RESULTS_FILE: resultsFile,
+                    PAPER_E2E_NO_BANNER: '1',
+                },
+            });
+            children.push(child);
+            pipeWithPrefix(child.stdout!, prefix, process.stdout);
+            pipeWithPrefix(child.stderr!, prefix, process.stderr);
+
+            const exitCode = await new Promise<number | null>(resolve => child.once('exit', resolve));
+
+            if (existsSync(resultsFile)) {
+                return readWorkerResults(resultsFile);
+            }
+
+            // the worker died before reporting, fail all of its files instead of losing them silently
+            const error = new Error(`Worker ${workerId} exited with code ${exitCode} before reporting results`);
+            return shard.map((file): TestResult => ({ file, testName: `${basename(file)} (worker ${workerId})`, passed: false, durationMs: 0, error }));
+        }));
+
+        return results.flat();
+    } finally {
+        process.removeListener('exit', killAll);
+        process.removeListener('SIGINT', onSignal);
+        process.removeListener('SIGTERM', onSignal);
+        killAll();
+    }
+}
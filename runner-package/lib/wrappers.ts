@@ -1,4 +1,5 @@
 import type { Bot } from 'mineflayer';
+import type { EventEmitter } from 'node:events';
 
 interface RawItem {
     name: string;
@@ -23,6 +24,152 @@ export interface Window {
     slots: (RawItem | null)[];
 }
 
+type ItemPredicate = (item: ItemWrapper) => boolean;
+
+/** Called with the slot that changed, or null when a different window was opened or closed. */
+type SlotListener = (slot: number | null) => void;
+
+/**
+ * Items of a bot's open window, indexed by slot.
+ * Built once when the window opens and then kept up to date from its `updateSlot` events,
+ * so lookups don't wrap every slot again and waiting code is woken up by the update itself.
+ */
+class GuiSlotIndex {
+    private static readonly indexes = new WeakMap<Bot, GuiSlotIndex>();
+
+    private readonly bot: Bot;
+    private window: (Window & EventEmitter) | null = null;
+    private windowTitle = '';
+    private slots: (ItemWrapper | null)[] = [];
+    private readonly listeners = new Set<SlotListener>();
+
+    private readonly onUpdateSlot = (slot: number, _oldItem: RawItem | null, newItem: RawItem | null) => {
+        this.slots[slot] = newItem ? new ItemWrapper(newItem) : null;
+        this.notify(slot);
+    };
+
+    private constructor(bot: Bot) {
+        this.bot = bot;
+        bot.on('windowOpen', () => this.sync());
+        bot.on('windowClose', () => this.sync());
+        this.sync();
+    }
+
+    static of(bot: Bot): GuiSlotIndex {
+        let index = GuiSlotIndex.indexes.get(bot);
+        if (!index) {
+            index = new GuiSlotIndex(bot);
+            GuiSlotIndex.indexes.set(bot, index);
+        }
+        return index;
+    }
+
+    /**
+     * Title of the open window, undefined when no window is open.
+     */
+    get title(): string | undefined {
+        this.sync();
+        return this.window ? this.windowTitle : undefined;
+    }
+
+    /**
+     * Items of the open window in slot order, empty when no window is open or its title doesn't match.
+     */
+    items(titleMatcher: (title: string) => boolean): ItemWrapper[] {
+        if (!this.matches(titleMatcher)) return [];
+        return this.slots.filter((item): item is ItemWrapper => item != null);
+    }
+
+    find(titleMatcher: (title: string) => boolean, predicate: ItemPredicate): ItemWrapper | undefined {
+        if (!this.matches(titleMatcher)) return undefined;
+        for (const item of this.slots) {
+            if (item && predicate(item)) return item;
+        }
+        return undefined;
+    }
+
+    /**
+     * Resolves with the first item matching the predicate, checking the open window once and then
+     * only the slots that change. Resolves undefined when nothing matched within the timeout.
+     */
+    waitFor(
+        titleMatcher: (title: string) => boolean,
+        predicate: ItemPredicate,
+        timeout: number
+    ): Promise<ItemWrapper | undefined> {
+        const found = this.find(titleMatcher, predicate);
+        if (found || timeout <= 0) return Promise.resolve(found);
+
+        return new Promise((resolve, reject) => {
+            const finish = (item: ItemWrapper | undefined, error?: unknown) => {
+                clearTimeout(deadline);
+                this.listeners.delete(listener);
+                if (error === undefined) {
+                    resolve(item);
+                } else {
+                    reject(error);
+                }
+            };
+
+            const listener: SlotListener = slot => {
+                // listeners run inside mineflayer's event emit, a throwing predicate must not escape there
+                try {
+                    if (slot === null) {
+                        const item = this.find(titleMatcher, predicate);
+                        if (item) finish(item);
+                        return;
+                    }
+                    const item = this.slots[slot];
+                    if (item && predicate(item) && this.matches(titleMatcher)) finish(item);
+                } catch (error) {
+                    finish(undefined, error);
+                }
+            };
+
+            const deadline = setTimeout(() => finish(undefined), timeout);
+            this.listeners.add(listener);
+        });
+    }
+
+    private matches(titleMatcher: (title: string) => boolean): boolean {
+        this.sync();
+        return this.window !== null && titleMatcher(this.windowTitle);
+    }
+
+    /**
+     * Follows `bot.currentWindow`, rebuilding the index when it changed.
+     */
+    private sync(): void {
+        const current = (this.bot.currentWindow ?? null) as unknown as (Window & EventEmitter) | null;
+        if (current === this.window) return;
+
+        this.window?.removeListener('updateSlot', this.onUpdateSlot);
+        this.window = current;
+        this.windowTitle = current ? ItemWrapper.parseChat(current.title) : '';
+        this.slots = current ? current.slots.map(item => item ? new ItemWrapper(item) : null) : [];
+        current?.on('updateSlot', this.onUpdateSlot);
+        this.notify(null);
+    }
+
+    private notify(slot: number | null): void {
+        for (const listener of [...this.listeners]) {
+            listener(slot);
+        }
+    }
+}
+
+async function logAndClick(bot: Bot, item: ItemWrapper, header: string): Promise<void> {
+    const lore = item.getLore();
+    console.log(`${header}: ${item.getDisplayName()}`);
+    console.log(`  Material: ${item.name}`);
+    console.log(`  Slot: ${item.slot}`);
+    if (lore.length > 0) {
+        console.log(`  Lore: ${lore.join(' | ')}`);
+    }
+
+    await bot.clickWindow(item.slot, 0, 0);
+}
+
 /**
  * A locator for GUI items.
  * Does NOT resolve the item immediately - it's a query that will be re-evaluated each time it's used.
@@ -43,7 +190,7 @@ export class GuiItemLocator {
     loreText(): string {
         const item = this._tryFind();
         if (!item) return '';
-        return item.getLore().join(' ');
+        return item._getLoreText();
     }
 
     /**
@@ -58,33 +205,25 @@ export class GuiItemLocator {
 
     /**
      * Clicks the located item.
-     * Retries until the item exists or times out.
+     * Waits until the item exists or times out, re-checking whenever a slot of the GUI changes.
      */
     async click(options: { timeout?: number } = {}): Promise<void> {
         const { timeout = 5000 } = options;
-        const startTime = Date.now();
-
-        while (Date.now() - startTime < timeout) {
-            const currentGui = this.gui._getCurrentGuiSnapshot();
-            if (currentGui) {
-                const item = currentGui._findItemInternal(this.predicate);
-                if (item) {
-                    await currentGui._clickItemInternal(this.predicate);
-                    return;
-                }
-            }
-            await new Promise(resolve => setTimeout(resolve, 100));
+
+        const item = await this.gui._waitForItem(this.predicate, timeout);
+        if (!item) {
+            throw new Error(
+                `[GuiItemLocator] Timeout waiting for item to exist (${timeout}ms)\n` +
+                `Gui items at timeout:\n` +
+                `${this._formatItemTable()}\n`
+            );
         }
 
-        throw new Error(
-            `[GuiItemLocator] Timeout waiting for item to exist (${timeout}ms)\n` +
-            `Gui items snapshot (may differ from what was checked during polling):\n` +
-            `${this._formatItemTable()}\n`
-        );
+        await logAndClick(this.gui._getBot(), item, '[GUI] Clicking item');
     }
 
     _formatItemTable(): string {
-        const items = this.gui._getCurrentGuiSnapshot()?.items ?? [];
+        const items = this.gui._getItems();
         const rows = items.map(item => ({
             slot: item.slot,
             name: item.name,
@@ -132,9 +271,7 @@ export class GuiItemLocator {
      * Returns undefined if not found.
      */
     private _tryFind(): ItemWrapper | undefined {
-        const currentGui = this.gui._getCurrentGuiSnapshot();
-        if (!currentGui) return undefined;
-        return currentGui._findItemInternal(this.predicate);
+        return this.gui._findItem(this.predicate);
     }
 }
 
@@ -145,18 +282,20 @@ export class GuiItemLocator {
 export class LiveGuiHandle {
     private readonly bot: Bot;
     private readonly titleMatcher: (title: string) => boolean;
+    private readonly index: GuiSlotIndex;
 
     constructor(bot: Bot, titleMatcher: (title: string) => boolean) {
         this.bot = bot;
         this.titleMatcher = titleMatcher;
+        this.index = GuiSlotIndex.of(bot);
     }
 
     /**
      * Gets the current GUI title, or undefined if no GUI is open or doesn't match.
      */
     get title(): string | undefined {
-        const gui = this._getCurrentGuiSnapshot();
-        return gui?.title;
+        const title = this.index.title;
+        return title !== undefined && this.titleMatcher(title) ? title : undefined;
     }
 
     /**
@@ -168,13 +307,25 @@ export class LiveGuiHandle {
     }
 
     /**
-     * Internal method to get a snapshot of the current GUI state.
-     * Returns undefined if no GUI is open or if it doesn't match the title matcher.
+     * Internal method to get the items of the current GUI in slot order.
+     * Empty if no GUI is open or if it doesn't match the title matcher.
      */
-    _getCurrentGuiSnapshot(): GuiWrapper | undefined {
-        if (!this.bot.currentWindow) return undefined;
-        const gui = new GuiWrapper(this.bot, this.bot.currentWindow as Window);
-        return this.titleMatcher(gui.title) ? gui : undefined;
+    _getItems(): ItemWrapper[] {
+        return this.index.items(this.titleMatcher);
+    }
+
+    /**
+     * Internal method to find an item in the current GUI.
+     */
+    _findItem(predicate: ItemPredicate): ItemWrapper | undefined {
+        return this.index.find(this.titleMatcher, predicate);
+    }
+
+    /**
+     * Internal method to wait for an item in the current GUI, resolves undefined on timeout.
+     */
+    _waitForItem(predicate: ItemPredicate, timeout: number): Promise<ItemWrapper | undefined> {
+        return this.index.waitFor(this.titleMatcher, predicate, timeout);
     }
 
     /**
@@ -185,6 +336,20 @@ export class LiveGuiHandle {
     }
 }
 
+interface DecodedItem {
+    displayName: string;
+    lore: string[];
+    loreText: string;
+    lowerCaseLore: string[];
+}
+
+/**
+ * Decoded display name and lore by raw item.
+ * Mineflayer replaces the item object on every slot update, so an entry lives exactly as long
+ * as the slot content it was decoded from, whichever wrappers are created around it.
+ */
+const decodedItems = new WeakMap<RawItem, DecodedItem>();
+
 export class ItemWrapper {
     raw: RawItem;
     name: string;
@@ -223,27 +388,43 @@ export class ItemWrapper {
     }
 
     getDisplayName(): string {
-        const nbtName = this.raw.nbt?.value?.display?.value?.Name?.value;
-
-        if (nbtName) {
-            return ItemWrapper.parseChat(nbtName);
-        }
-
-        return this.raw.displayName || this.name;
+        return this.decoded().displayName;
     }
 
     getLore(): string[] {
-        const nbtLore = this.raw.nbt?.value?.display?.value?.Lore?.value?.value;
+        return [...this.decoded().lore];
+    }
 
-        if (!nbtLore || !Array.isArray(nbtLore)) return [];
+    hasLore(text: string): boolean {
+        const needle = text.toLowerCase();
+        return this.decoded().lowerCaseLore.some(line => line.includes(needle));
+    }
 
-        return nbtLore.map(line => ItemWrapper.parseChat(line));
+    /** @internal Lore lines joined with spaces. */
+    _getLoreText(): string {
+        return this.decoded().loreText;
     }
 
-    hasLore(text: string): boolean {
-        return this.getLore().some(line =>
-            line.toLowerCase().includes(text.toLowerCase())
-        );
+    /**
+     * Decodes the NBT display name and lore on first use, predicates then read the cached text.
+     */
+    private decoded(): DecodedItem {
+        let decoded = decodedItems.get(this.raw);
+        if (decoded) return decoded;
+
+        const display = this.raw.nbt?.value?.display?.value;
+        const nbtName = display?.Name?.value;
+        const nbtLore = display?.Lore?.value?.value;
+        const lore = Array.isArray(nbtLore) ? nbtLore.map(line => ItemWrapper.parseChat(line)) : [];
+
+        decoded = {
+            displayName: nbtName ? ItemWrapper.parseChat(nbtName) : (this.raw.displayName || this.name),
+            lore,
+            loreText: lore.join(' '),
+            lowerCaseLore: lore.map(line => line.toLowerCase())
+        };
+        decodedItems.set(this.raw, decoded);
+        return decoded;
     }
 }
 
@@ -296,15 +477,7 @@ export class GuiWrapper {
             throw new Error(`[GUI] Failed to click: Item not found matching criteria in "${this.title}"`);
         }
 
-        const lore = item.getLore();
-        console.log(`[GUI] Clicking item: ${item.getDisplayName()}`);
-        console.log(`  Material: ${item.name}`);
-        console.log(`  Slot: ${item.slot}`);
-        if (lore.length > 0) {
-            console.log(`  Lore: ${lore.join(' | ')}`);
-        }
-
-        await this.bot.clickWindow(item.slot, 0, 0);
+        await logAndClick(this.bot, item, '[GUI] Clicking item');
     }
 
     // -----------------------------------------------------------------------
@@ -350,50 +523,22 @@ export class GuiWrapper {
 
 export function createPlayerExtensions(bot: Bot) {
     return {
+        // pollingRate is no longer used, items are matched as their slots update
         async waitForGuiItem(
             itemMatcher: (item: ItemWrapper) => boolean,
             options: { timeout?: number; pollingRate?: number } = {}
         ): Promise<ItemWrapper> {
             console.warn('[DEPRECATED] player.waitForGuiItem() is deprecated. Use gui.locator() with expectations instead. See documentation for migration guide.');
 
-            const { timeout = 5000, pollingRate = 100 } = options;
-            const startTime = Date.now();
-
-            return new Promise((resolve, reject) => {
-                const checkForItem = () => {
-                    const elapsed = Date.now() - startTime;
-
-                    if (elapsed >= timeout) {
-                        clearInterval(pollInterval);
-                        reject(new Error(`[Player] Timeout waiting for GUI item (${timeout}ms)`));
-                        return;
-                    }
-
-                    // Check if there's a current window open
-                    if (!bot.currentWindow) {
-                        return; // Continue polling
-                    }
-
-                    const window = bot.currentWindow as Window;
-                    const items = window.slots
-                        .filter((item): item is RawItem => item != null)
-                        .map(item => new ItemWrapper(item));
-
-                    const matchedItem = items.find(itemMatcher);
-
-                    if (matchedItem) {
-                        clearInterval(pollInterval);
-                        console.log(`[Player] Found GUI item: ${matchedItem.getDisplayName()} at slot ${matchedItem.slot}`);
-                        resolve(matchedItem);
-                    }
-                };
+            const { timeout = 5000 } = options;
 
-                // Start polling
-                const pollInterval = setInterval(checkForItem, pollingRate);
+            const matchedItem = await GuiSlotIndex.of(bot).waitFor(() => true, itemMatcher, timeout);
+            if (!matchedItem) {
+                throw new Error(`[Player] Timeout waiting for GUI item (${timeout}ms)`);
+            }
 
-                // Initial check
-                checkForItem();
-            });
+            console.log(`[Player] Found GUI item: ${matchedItem.getDisplayName()} at slot ${matchedItem.slot}`);
+            return matchedItem;
         },
 
         async clickGuiItem(
@@ -402,54 +547,14 @@ export function createPlayerExtensions(bot: Bot) {
         ): Promise<void> {
             console.warn('[DEPRECATED] player.clickGuiItem() is deprecated. Use gui.locator().click() instead. See documentation for migration guide.');
 
-            const { timeout = 5000, pollingRate = 100 } = options;
-            const startTime = Date.now();
-
-            return new Promise((resolve, reject) => {
-                const checkForItem = async () => {
-                    const elapsed = Date.now() - startTime;
-
-                    if (elapsed >= timeout) {
-                        clearInterval(pollInterval);
-                        reject(new Error(`[Player] Timeout waiting for GUI item to click (${timeout}ms)`));
-                        return;
-                    }
-
-                    if (!bot.currentWindow) {
-                        return;
-                    }
-
-                    const window = bot.currentWindow as Window;
-                    const items = window.slots
-                        .filter((item): item is RawItem => item != null)
-                        .map(item => new ItemWrapper(item));
-
-                    const matchedItem = items.find(itemMatcher);
-
-                    if (matchedItem) {
-                        clearInterval(pollInterval);
-
-                        const lore = matchedItem.getLore();
-                        console.log(`[Player] Clicking GUI item: ${matchedItem.getDisplayName()}`);
-                        console.log(`  Material: ${matchedItem.name}`);
-                        console.log(`  Slot: ${matchedItem.slot}`);
-                        if (lore.length > 0) {
-                            console.log(`  Lore: ${lore.join(' | ')}`);
-                        }
-
-                        try {
-                            await bot.clickWindow(matchedItem.slot, 0, 0);
-                            resolve();
-                        } catch (error) {
-                            reject(error);
-                        }
-                    }
-                };
+            const { timeout = 5000 } = options;
 
-                const pollInterval = setInterval(checkForItem, pollingRate);
+            const matchedItem = await GuiSlotIndex.of(bot).waitFor(() => true, itemMatcher, timeout);
+            if (!matchedItem) {
+                throw new Error(`[Player] Timeout waiting for GUI item to click (${timeout}ms)`);
+            }
 
-                checkForItem();
-            });
+            await logAndClick(bot, matchedItem, '[Player] Clicking GUI item');
         },
 
         async waitForGui(
@@ -529,9 +634,8 @@ export function createPlayerExtensions(bot: Bot) {
                 let settled = false;
 
                 const tryMatch = (): boolean => {
-                    if (!bot.currentWindow) return false;
-                    const gui = new GuiWrapper(bot, bot.currentWindow as Window);
-                    return titleMatcher(gui.title);
+                    const currentTitle = GuiSlotIndex.of(bot).title;
+                    return currentTitle !== undefined && titleMatcher(currentTitle);
                 };
 
                 const settle = () => {
@@ -1,6 +1,6 @@
 import { spawn, ChildProcessWithoutNullStreams } from 'child_process';
-import { readdir, readFile } from 'fs/promises';
-import { join, basename } from 'path';
+import { copyFile, readdir, readFile } from 'fs/promises';
+import { join, basename, delimiter } from 'path';
 import { pathToFileURL } from 'url';
 import { randomUUID } from 'node:crypto';
 import { install as installSourceMapSupport } from 'source-map-support';
@@ -46,9 +46,21 @@ async function printBanner(): Promise<void> {
 import { ItemWrapper, GuiWrapper } from './lib/wrappers.js';
 import { PlayerWrapper } from './lib/player.js';
 import { ServerWrapper } from './lib/server.js';
-import { testRegistry, scopeStack } from './lib/test-registry.js';
-import { messageBuffer, serverConsoleBuffer, createBot, disconnectAllBots, writeMcOutput } from './lib/bot-utils.js';
+import { testRegistry, scopeStack, TestCase } from './lib/test-registry.js';
+import { createBot, disconnectAllBots, disconnectScopeBots, onServerLine, pipeServerOutput } from './lib/bot-utils.js';
+import type { ConsoleLine } from './lib/console-parser.js';
+import { createScope, currentScope, rootScope, runInScope, TestScope } from './lib/test-scope.js';
+import { BotPool } from './lib/bot-pool.js';
 import { formatDuration, printTestSummary } from './lib/reporter.js';
+import { runWorkerPool, writeWorkerResults } from './lib/worker-pool.js';
+import { captureSnapshot, restoreSnapshot, snapshotDirOf } from './lib/snapshot.js';
+import { waitForServerReady } from './lib/readiness.js';
+import { AgentClient, findFreePort } from './lib/agent-client.js';
+import { DevWatcher } from './lib/dev-watcher.js';
+import { beginSpecCoverage, writeSpecCoverage } from './lib/coverage.js';
+import { CommandChannel } from './lib/command-channel.js';
+import { runWithConcurrency, waitUntil } from './lib/utils.js';
+import { sampleMetrics, startMetricsSampling, stopMetricsSampling, summarizeMetrics } from './lib/metrics.js';
 import type { TestResult } from './lib/types.js';
 
 // Enable source map support for accurate TypeScript stack traces
@@ -58,46 +70,130 @@ installSourceMapSupport();
 export { ItemWrapper, GuiWrapper };
 export { PlayerWrapper } from './lib/player.js';
 export { ServerWrapper } from './lib/server.js';
-export { test, opTest, describe, beforeEach, afterEach } from './lib/test-registry.js';
+export type { AgentPlayerState, AgentInventoryItem } from './lib/server.js';
+export type { AgentClient } from './lib/agent-client.js';
+export { test, opTest, loadTest, describe, beforeEach, afterEach } from './lib/test-registry.js';
+export type { LoadTestOptions, LoadActionContext, LoadReport, LoadStepStats } from './lib/load-test.js';
 export { expect } from './lib/matchers.js';
 export type { TestContext } from './lib/types.js';
+export type { ConsoleLine, LogLevel } from './lib/console-parser.js';
 
-async function waitForServerStart(serverProcess: ChildProcessWithoutNullStreams): Promise<void> {
-    return new Promise((resolve, reject) => {
+const SERVER_START_TIMEOUT_MS = 120000;
+
+/**
+ * Paper prints `Done (12.345s)! For help, type "help"` once all worlds are loaded.
+ */
+function isStartupDone(line: ConsoleLine): boolean {
+    // custom console formats aren't parsed, they only have a message
+    return (line.level === 'INFO' || line.level === undefined) && line.logger === undefined && line.message.startsWith('Done (');
+}
+
+/**
+ * Waits for the startup `Done` line, then until the server answers a status ping on `port`.
+ */
+async function waitForServerStart(serverProcess: ChildProcessWithoutNullStreams, port: number): Promise<void> {
+    const deadline = Date.now() + SERVER_START_TIMEOUT_MS;
+
+    await new Promise<void>((resolve, reject) => {
         const timeout = setTimeout(() => {
-            reject(new Error('Server failed to start within 120 seconds'));
-        }, 120000);
+            cleanup();
+            reject(new Error(`Server failed to start within ${SERVER_START_TIMEOUT_MS / 1000} seconds`));
+        }, SERVER_START_TIMEOUT_MS);
 
-        const dataHandler = (data: Buffer): void => {
-            const output = data.toString();
-            writeMcOutput(data);
+        const removeLineListener = onServerLine(line => {
+            if (isStartupDone(line)) {
+                cleanup();
+                resolve();
+            }
+        });
 
-            if (output.includes('Done (')) {
-                clearTimeout(timeout);
-                serverProcess.stdout.removeListener('data', dataHandler);
-                serverProcess.stderr.removeListener('data', stderrHandler);
-                setTimeout(resolve, 3000);
+        const errorHandler = (err: Error): void => {
+            cleanup();
+            reject(new Error(`Failed to start server: ${err.message}`));
+        };
+
+        const exitHandler = (code: number | null): void => {
+            if (code !== null && code !== 0) {
+                cleanup();
+                reject(new Error(`Server exited with code ${code} before becoming ready`));
             }
         };
 
-        const stderrHandler = (data: Buffer): void => {
-            writeMcOutput(data);
+        const cleanup = (): void => {
+            clearTimeout(timeout);
+            removeLineListener();
+            serverProcess.removeListener('error', errorHandler);
+            serverProcess.removeListener('exit', exitHandler);
         };
 
-        serverProcess.stdout.on('data', dataHandler);
-        serverProcess.stderr.on('data', stderrHandler);
+        serverProcess.on('error', errorHandler);
+        serverProcess.on('exit', exitHandler);
+    });
+
+    // "Done" is logged before the network listener is guaranteed to take logins,
+    // a status ping on the port bots connect to only succeeds once it does
+    await waitForServerReady('localhost', port, { timeout: Math.max(1000, deadline - Date.now()) });
+}
+
+/**
+ * Asks the server to stop, killing it if it doesn't exit within 30 seconds.
+ */
+async function stopServer(serverProcess: ChildProcessWithoutNullStreams): Promise<void> {
+    if (serverProcess.exitCode === null && !serverProcess.killed) {
+        try {
+            serverProcess.stdin.write('stop\n');
+        } catch (err) {
+            console.log(pc.yellow(`[WARNING] Failed to send stop command to server: ${(err as Error).message}`));
+        }
+    }
+
+    await new Promise<void>((resolve) => {
+        // already gone, e.g. crashed during the tests
+        if (serverProcess.exitCode !== null) {
+            resolve();
+            return;
+        }
 
-        serverProcess.on('error', (err: Error) => {
+        const timeout = setTimeout(() => {
+            console.log(pc.yellow('[WARNING] Server did not stop gracefully, forcing shutdown...'));
+            serverProcess.kill();
+            resolve();
+        }, 30000);
+
+        serverProcess.once('exit', (code) => {
             clearTimeout(timeout);
-            reject(new Error(`Failed to start server: ${err.message}`));
+            if (code !== 0) {
+                console.log(pc.yellow(`[WARNING] Server exited with code: ${code}`));
+            }
+            resolve();
         });
+    });
 
-        serverProcess.on('exit', (code: number | null) => {
-            if (code !== null && code !== 0) {
+    serverProcess.removeAllListeners();
+    serverProcess.stdin.end();
+    serverProcess.stdout.destroy();
+    serverProcess.stderr.destroy();
+}
+
+/**
+ * Writes all worlds to disk, so the run dir can be copied while the server keeps running.
+ */
+async function flushWorlds(serverProcess: ChildProcessWithoutNullStreams, timeoutMs: number = 60000): Promise<void> {
+    await new Promise<void>((resolve, reject) => {
+        const timeout = setTimeout(() => {
+            removeLineListener();
+            reject(new Error(`Server did not save its worlds within ${timeoutMs}ms`));
+        }, timeoutMs);
+
+        const removeLineListener = onServerLine(line => {
+            if (line.message.startsWith('Saved the game')) {
                 clearTimeout(timeout);
-                reject(new Error(`Server exited with code ${code} before becoming ready`));
+                removeLineListener();
+                resolve();
             }
         });
+
+        serverProcess.stdin.write('save-all flush\n');
     });
 }
 
@@ -113,12 +209,41 @@ async function findSpecFiles(dir: string): Promise<string[]> {
     return results;
 }
 
+async function resolveSpecFiles(testFileFilter: string | undefined): Promise<string[]> {
+    // Workers receive their exact shard from the coordinating runner
+    const assigned = process.env.PAPER_E2E_SPEC_FILES;
+    if (assigned) {
+        return assigned.split(delimiter).filter(file => file.length > 0);
+    }
+
+    let testFiles = await findSpecFiles(process.cwd());
+    if (testFileFilter) {
+        const patterns = testFileFilter.split(',').map(p => p.trim());
+        console.log(`${pc.dim(`Filtering test files with patterns: ${JSON.stringify(patterns)}`)}\n`);
+        testFiles = testFiles.filter(file =>
+            patterns.some(pattern => {
+                const fileName = basename(file).replace(/\.spec\.js$/, '');
+                const matches = fileName.includes(pattern) || file.includes(pattern);
+                console.log(pc.dim(`  Testing ${file} (basename: ${fileName}) against pattern "${pattern}": ${matches}`));
+                return matches;
+            })
+        );
+    }
+    return testFiles;
+}
+
 export async function runTestSession(): Promise<void> {
     const serverJar = process.env.SERVER_JAR;
     const serverDir = process.env.SERVER_DIR;
     const javaPath = process.env.JAVA_PATH;
     const testFileFilter = process.env.TEST_FILES;
     const testNameFilter = process.env.TEST_NAMES;
+    const serverPort = process.env.SERVER_PORT ? parseInt(process.env.SERVER_PORT, 10) : 25565;
+    const workers = Math.max(1, parseInt(process.env.WORKERS || '1', 10) || 1);
+    const workerResultsFile = process.env.PAPER_E2E_RESULTS_FILE;
+    const isolation = process.env.ISOLATION === 'file' || process.env.ISOLATION === 'restart' ? process.env.ISOLATION : 'none';
+    const devMode = process.env.DEV_MODE === 'true';
+    const pluginJar = process.env.PLUGIN_JAR;
     const testResults: TestResult[] = [];
 
     if (!serverJar || !serverDir || !javaPath) {
@@ -129,6 +254,18 @@ export async function runTestSession(): Promise<void> {
 
     await printBanner();
 
+    const testFiles = await resolveSpecFiles(testFileFilter);
+
+    // Dev mode keeps one server around to reload the plugin into
+    if (workers > 1 && testFiles.length > 1 && !devMode) {
+        const results = await runWorkerPool({ serverDir, specFiles: testFiles, workers, basePort: serverPort });
+        exitCode = printTestSummary(results);
+        setTimeout(() => {
+            process.exit(exitCode);
+        }, 1000).unref();
+        return;
+    }
+
     console.log(`${pc.bold('Starting Paper server...')}`);
 
     const jvmArgsString = process.env.JVM_ARGS || '';
@@ -136,10 +273,34 @@ export async function runTestSession(): Promise<void> {
 
     console.log(pc.dim(`JVM Arguments: ${jvmArgs.join(' ')}`));
 
-    const serverProcess = spawn(javaPath!, [...jvmArgs, '-jar', serverJar, '--nogui'], {
-        cwd: serverDir,
-        stdio: ['pipe', 'pipe', 'pipe']
-    });
+    // The agent plugin listens on a port picked here, a worker never collides with another one
+    const agentPort = process.env.PAPER_E2E_AGENT === 'true' ? await findFreePort() : undefined;
+    const agentArgs = agentPort !== undefined ? [`-Dpaper.e2e.agent.port=${agentPort}`] : [];
+    let agent: AgentClient | undefined;
+
+    const spawnServer = (): ChildProcessWithoutNullStreams => {
+        const child = spawn(javaPath!, [...jvmArgs, ...agentArgs, '-jar', serverJar, '--nogui'], {
+            cwd: serverDir,
+            stdio: ['pipe', 'pipe', 'pipe']
+        });
+        pipeServerOutput(child.stdout);
+        pipeServerOutput(child.stderr);
+        return child;
+    };
+
+    let serverProcess = spawnServer();
+
+    const startServer = async (): Promise<void> => {
+        await waitForServerStart(serverProcess, serverPort);
+        if (agentPort === undefined) return;
+        try {
+            agent = await AgentClient.connect(agentPort);
+            console.log(pc.dim(`Connected to test agent on port ${agentPort}`));
+        } catch (err) {
+            agent = undefined;
+            console.log(pc.yellow(`[runner] ${(err as Error).message}, falling back to chat and console output`));
+        }
+    };
 
     // Ensure the Paper server dies if our runner is killed (e.g. Gradle task
     // cancelled from the IDE). Otherwise the java.exe keeps running and holds
@@ -189,162 +350,308 @@ export async function runTestSession(): Promise<void> {
         try { process.stdin.resume(); } catch { /* ignore */ }
     }
 
-    try {
-        await waitForServerStart(serverProcess);
-        console.log(`${pc.green(pc.bold('Server started successfully'))}\n`);
+    const timeoutMs = process.env.TEST_TIMEOUT ? parseInt(process.env.TEST_TIMEOUT, 10) : 30000;
+    const testConcurrency = Math.max(1, parseInt(process.env.TEST_CONCURRENCY || '4', 10) || 1);
+    const metricsInterval = Math.max(0, parseInt(process.env.METRICS_INTERVAL || '1000', 10) || 0);
+
+    const commands = new CommandChannel(() => serverProcess.stdin, onServerLine);
+
+    const connectPlayer = async (username: string | undefined, server: ServerWrapper, scope: TestScope): Promise<PlayerWrapper> => {
+        const uniqueId = randomUUID().split('-')[0];
+        const botUsername = username || `Test_${uniqueId}`;
+        console.log(`${pc.cyan('[Bot]')} Creating bot: ${pc.bold(botUsername)}`);
+
+        const bot = createBot({
+            host: 'localhost',
+            port: serverPort,
+            username: botUsername,
+            version: process.env.MC_VERSION,
+            auth: 'offline',
+        }, scope);
+
+        const player = new PlayerWrapper(bot, scope);
+        player._captureSpawnPromise();
+        player.setServerWrapper(server);
+        player._setBotOptions({
+            host: 'localhost',
+            port: serverPort,
+            version: process.env.MC_VERSION,
+            auth: 'offline',
+        });
 
-        serverProcess.stdout.on('data', writeMcOutput);
-        serverProcess.stderr.on('data', writeMcOutput);
-
-        let testFiles = await findSpecFiles(process.cwd());
-        if (testFileFilter) {
-            const patterns = testFileFilter.split(',').map(p => p.trim());
-            console.log(`${pc.dim(`Filtering test files with patterns: ${JSON.stringify(patterns)}`)}\n`);
-            testFiles = testFiles.filter(file =>
-                patterns.some(pattern => {
-                    const fileName = basename(file).replace(/\.spec\.js$/, '');
-                    const matches = fileName.includes(pattern) || file.includes(pattern);
-                    console.log(pc.dim(`  Testing ${file} (basename: ${fileName}) against pattern "${pattern}": ${matches}`));
-                    return matches;
-                })
-            );
+        await player.join();
+        return player;
+    };
+
+    // Opt-in pool of pre-connected bots, recreated whenever the server restarts
+    const botPoolSize = Math.max(0, parseInt(process.env.BOT_POOL_SIZE || '0', 10) || 0);
+    const createBotPool = (): BotPool | undefined => {
+        if (botPoolSize === 0) return undefined;
+        const poolServer = new ServerWrapper(commands, agent);
+        return new BotPool({
+            size: botPoolSize,
+            server: poolServer,
+            connect: () => connectPlayer(undefined, poolServer, rootScope),
+        });
+    };
+    let botPool: BotPool | undefined;
+
+    const runTestCase = (file: string, testCase: TestCase, concurrent: boolean): Promise<TestResult> => runInScope(createScope(`${basename(file)} > ${testCase.name}`), async () => {
+        // Concurrent tests interleave their output, so results repeat the test name
+        const label = concurrent ? ` ${testCase.name}` : '';
+        console.log(`  ${pc.bold(`Test: ${testCase.name}`)}`);
+
+        const server = new ServerWrapper(commands, agent);
+        const pool = botPool;
+        const leased: PlayerWrapper[] = [];
+
+        const createPlayer = async (options?: { username?: string }): Promise<PlayerWrapper> => {
+            if (pool && !options?.username) {
+                const player = await pool.lease();
+                console.log(`${pc.cyan('[Bot]')} Leased pooled bot: ${pc.bold(player.username)}`);
+                player._attach(currentScope(), server);
+                leased.push(player);
+                return player;
+            }
+            return connectPlayer(options?.username, server, currentScope());
+        };
+
+        let testStartTime = Date.now();
+
+        // a last sample covers the end of the test, whether it passed or not
+        const finishMetrics = async () => {
+            await sampleMetrics();
+            return summarizeMetrics(currentScope().metrics);
+        };
+
+        try {
+            const player = await createPlayer();
+            // closes the current sampling window, the login isn't part of the test
+            await sampleMetrics();
+            currentScope().metrics.length = 0;
+            testStartTime = Date.now();
+
+            const abortController = new AbortController();
+            const testTimeoutMs = testCase.timeout ?? timeoutMs;
+            let timeoutHandle: ReturnType<typeof setTimeout>;
+            const timeoutPromise = new Promise<never>((_, reject) => {
+                timeoutHandle = setTimeout(() => {
+                    abortController.abort();
+                    reject(new Error(testCase.timeout !== undefined
+                        ? `Test timed out after ${testTimeoutMs}ms.`
+                        : `Test timed out after ${testTimeoutMs}ms. You can increase this by setting the TEST_TIMEOUT environment variable.`));
+                }, testTimeoutMs);
+            });
+
+            await Promise.race([
+                testCase.fn({ player, server, createPlayer, signal: abortController.signal }).finally(() => clearTimeout(timeoutHandle)),
+                timeoutPromise
+            ]);
+
+            const durationMs = Date.now() - testStartTime;
+            console.log(`    ${pc.green(pc.bold('PASSED'))}${label} ${pc.dim(`(${formatDuration(durationMs)})`)}\n`);
+            return { file, testName: testCase.name, passed: true, durationMs, load: currentScope().loadReport, metrics: await finishMetrics() };
+        } catch (error) {
+            const durationMs = Date.now() - testStartTime;
+            const errorMsg = (error as Error).message;
+
+            console.log(`    ${pc.red(pc.bold('FAILED'))}${label} ${pc.dim(`(${formatDuration(durationMs)})`)}: ${pc.red(errorMsg)}\n`);
+
+            return {
+                file,
+                testName: testCase.name,
+                passed: false,
+                durationMs,
+                error: error as Error,
+                load: currentScope().loadReport,
+                metrics: await finishMetrics()
+            };
+        } finally {
+            leased.forEach(player => pool!.release(player));
+            await disconnectScopeBots(currentScope());
         }
+    });
 
-        console.log(`${pc.bold(`Found ${testFiles.length} test file(s)${testFileFilter ? ` matching filter: ${testFileFilter}` : ''}`)}\n`);
+    // Re-imports in dev mode get a fresh URL, the module cache would return the old code otherwise
+    let importGeneration = 0;
+
+    const runSpecFile = async (file: string): Promise<TestResult[]> => {
+        const results: TestResult[] = [];
+        console.log(`\n${pc.blue(pc.bold(`Running tests from: ${file}`))}`);
+
+        testRegistry.length = 0;
+        scopeStack.length = 0;
+        scopeStack.push({ label: '', beforeHooks: [], afterHooks: [] });
+        beginSpecCoverage();
+        const url = pathToFileURL(file).href;
+        await import(importGeneration > 0 ? `${url}?dev=${importGeneration}` : url);
+
+        const selected = testRegistry.filter(testCase => {
+            if (!testNameFilter) return true;
+            const patterns = testNameFilter.split(',').map(p => p.trim());
+            const matches = patterns.some(pattern => testCase.name.includes(pattern));
+            if (!matches) {
+                console.log(pc.dim(`  Test: ${testCase.name} - SKIPPED (filter: ${testNameFilter})`));
+            }
+            return matches;
+        });
 
-        for (const file of testFiles) {
-            console.log(`\n${pc.blue(pc.bold(`Running tests from: ${file}`))}`);
-
-            testRegistry.length = 0;
-            scopeStack.length = 0;
-            scopeStack.push({ label: '', beforeHooks: [], afterHooks: [] });
-            await import(pathToFileURL(file).href);
-
-            for (const testCase of testRegistry) {
-                if (testNameFilter) {
-                    const patterns = testNameFilter.split(',').map(p => p.trim());
-                    const matches = patterns.some(pattern => testCase.name.includes(pattern));
-                    if (!matches) {
-                        console.log(pc.dim(`  Test: ${testCase.name} - SKIPPED (filter: ${testNameFilter})`));
-                        continue;
-                    }
-                }
+        for (let i = 0; i < selected.length;) {
+            if (!selected[i].concurrent) {
+                results.push(await runTestCase(file, selected[i++], false));
+                continue;
+            }
 
-                console.log(`  ${pc.bold(`Test: ${testCase.name}`)}`);
+            // Adjacent concurrent tests run together, each in its own scope
+            const group: TestCase[] = [];
+            while (i < selected.length && selected[i].concurrent) {
+                group.push(selected[i++]);
+            }
+            console.log(`  ${pc.bold(`Running ${group.length} concurrent test(s), up to ${testConcurrency} at once`)}`);
 
-                messageBuffer.length = 0;
-                serverConsoleBuffer.length = 0;
+            const groupResults: TestResult[] = new Array(group.length);
+            await runWithConcurrency(group.length, testConcurrency, async index => {
+                groupResults[index] = await runTestCase(file, group[index], true);
+            });
+            results.push(...groupResults);
+        }
 
-                const server = new ServerWrapper((cmd: string) => {
-                    console.log(`${pc.yellow('[Server]')} ${pc.dim(`Executing: ${cmd}`)}`);
-                    serverProcess.stdin.write(cmd + '\n', (err) => {
-                        if (err) console.error(`[Server] Write error: ${err}`);
-                    });
+        await writeSpecCoverage(file, results);
+        return results;
+    };
+
+    /**
+     * Stops the server, runs `whileStopped` and starts it again with a fresh bot pool.
+     */
+    const restartServer = async (whileStopped: () => Promise<void>): Promise<void> => {
+        await botPool?.drain();
+        agent?.close();
+        commands.reset('Server restarted');
+        await stopServer(serverProcess);
+        await whileStopped();
+        serverProcess = spawnServer();
+        await startServer();
+        botPool = createBotPool();
+        botPool?.warm();
+    };
+
+    /**
+     * Restores plugin data and player data from the snapshot through the agent, which reloads all
+     * plugins but keeps the server running. Falls back to a restart restoring the whole run dir.
+     */
+    const resetServer = async (): Promise<void> => {
+        if (agent?.connected) {
+            const startTime = Date.now();
+            try {
+                await botPool?.drain();
+                // players save their data when leaving, that must happen before it is restored
+                await agent.call('execute', { command: 'minecraft:kick @a Resetting the server for the next test file' });
+                await waitUntil(async () => (await agent!.call<string[]>('onlinePlayers')).length === 0, {
+                    timeout: 10000,
+                    message: 'Players did not leave'
                 });
+                const reloaded = await agent.call<string[]>('resetState', { snapshot: snapshotDirOf(serverDir) }, { timeout: 120000 });
+                console.log(pc.dim(`Reset plugin and player data in place, reloaded ${reloaded.length} plugin(s) in ${Date.now() - startTime}ms`));
+                botPool = createBotPool();
+                botPool?.warm();
+                return;
+            } catch (err) {
+                console.log(pc.yellow(`[runner] In-place reset failed (${(err as Error).message}), restarting the server`));
+            }
+        }
+        await restartServer(() => restoreSnapshot(serverDir));
+    };
+
+    /**
+     * Keeps the server running and reruns spec files whenever they or the plugin jar change.
+     * A rebuilt plugin is swapped in by the agent, the server only restarts when that fails.
+     */
+    const runDevLoop = async (): Promise<void> => {
+        const watcher = await DevWatcher.start({ pluginJar, specRoot: process.cwd() });
+        console.log(`\n${pc.bold('Dev mode:')} ${pc.dim('watching the plugin jar and spec files, press Ctrl+C to stop')}`);
 
-                const createPlayer = async (options?: { username?: string }): Promise<PlayerWrapper> => {
-                    const uniqueId = randomUUID().split('-')[0];
-                    const botUsername = options?.username || `Test_${uniqueId}`;
-                    console.log(`${pc.cyan('[Bot]')} Creating bot: ${pc.bold(botUsername)}`);
-
-                    const bot = createBot({
-                        host: 'localhost',
-                        port: 25565,
-                        username: botUsername,
-                        version: process.env.MC_VERSION,
-                        auth: 'offline',
-                    });
-
-                    const player = new PlayerWrapper(bot);
-                    player._captureSpawnPromise();
-                    player.setServerWrapper(server);
-                    player._setBotOptions({
-                        host: 'localhost',
-                        port: 25565,
-                        version: process.env.MC_VERSION,
-                        auth: 'offline',
-                    });
-
-                    await player.join();
-                    return player;
-                };
-
-                const player = await createPlayer();
-
-                const testStartTime = Date.now();
+        for (;;) {
+            const change = await watcher.next();
+            let files = change.specFiles;
 
+            if (change.pluginChanged && pluginJar) {
+                console.log(`\n${pc.bold(`Plugin jar changed, reloading ${basename(pluginJar)}...`)}`);
                 try {
-                    const abortController = new AbortController();
-                    const timeoutMs = process.env.TEST_TIMEOUT ? parseInt(process.env.TEST_TIMEOUT, 10) : 30000;
-                    let timeoutHandle: ReturnType<typeof setTimeout>;
-                    const timeoutPromise = new Promise<never>((_, reject) => {
-                        timeoutHandle = setTimeout(() => {
-                            abortController.abort();
-                            reject(new Error(`Test timed out after ${timeoutMs}ms. You can increase this by setting the TEST_TIMEOUT environment variable.`));
-                        }, timeoutMs);
-                    });
-
-                    await Promise.race([
-                        testCase.fn({ player, server, createPlayer, signal: abortController.signal }).finally(() => clearTimeout(timeoutHandle)),
-                        timeoutPromise
-                    ]);
-
-                    const durationMs = Date.now() - testStartTime;
-                    console.log(`    ${pc.green(pc.bold('PASSED'))} ${pc.dim(`(${formatDuration(durationMs)})`)}\n`);
-                    testResults.push({ file, testName: testCase.name, passed: true, durationMs });
-                } catch (error) {
-                    const durationMs = Date.now() - testStartTime;
-                    const errorMsg = (error as Error).message;
-
-                    console.log(`    ${pc.red(pc.bold('FAILED'))} ${pc.dim(`(${formatDuration(durationMs)})`)}: ${pc.red(errorMsg)}\n`);
-
-                    testResults.push({
-                        file,
-                        testName: testCase.name,
-                        passed: false,
-                        durationMs,
-                        error: error as Error
-                    });
-                } finally {
-                    await disconnectAllBots();
+                    if (!agent) throw new Error('test agent is not connected');
+                    const name = await agent.call<string>('reloadPlugin', { file: basename(pluginJar), source: pluginJar }, { timeout: 60000 });
+                    console.log(pc.dim(`Reloaded ${name} in place`));
+                } catch (err) {
+                    console.log(pc.yellow(`[runner] In-place reload failed (${(err as Error).message}), restarting the server`));
+                    await restartServer(() => copyFile(pluginJar, join(serverDir, 'plugins', basename(pluginJar))));
                 }
+                // without knowing what the change touched every spec is affected
+                files = await resolveSpecFiles(testFileFilter);
             }
-        }
-
-    } finally {
-        await disconnectAllBots();
 
-        // Stop the server
-        if (serverProcess.exitCode === null && !serverProcess.killed) {
+            if (files.length === 0) continue;
+            importGeneration++;
+            const results: TestResult[] = [];
             try {
-                serverProcess.stdin.write('stop\n');
+                for (const file of files) {
+                    results.push(...await runSpecFile(file));
+                }
             } catch (err) {
-                console.log(pc.yellow(`[WARNING] Failed to send stop command to server: ${(err as Error).message}`));
+                // a spec saved halfway through an edit must not end the session
+                console.log(pc.red(`[runner] ${(err as Error).message}`));
+                continue;
             }
+            printTestSummary(results);
         }
+    };
 
-        await new Promise<void>((resolve) => {
-            const timeout = setTimeout(() => {
-                console.log(pc.yellow('[WARNING] Server did not stop gracefully, forcing shutdown...'));
-                serverProcess.kill();
-                resolve();
-            }, 30000);
+    try {
+        await startServer();
+        console.log(`${pc.green(pc.bold('Server started successfully'))}\n`);
+        startMetricsSampling(() => agent, metricsInterval);
 
-            serverProcess.once('exit', (code) => {
-                clearTimeout(timeout);
-                if (code !== 0) {
-                    console.log(pc.yellow(`[WARNING] Server exited with code: ${code}`));
+        if (isolation !== 'none') {
+            await flushWorlds(serverProcess);
+            await captureSnapshot(serverDir);
+        }
+
+        botPool = createBotPool();
+        botPool?.warm();
+
+        console.log(`${pc.bold(`Found ${testFiles.length} test file(s)${testFileFilter ? ` matching filter: ${testFileFilter}` : ''}`)}\n`);
+
+        for (const [fileIndex, file] of testFiles.entries()) {
+            if (isolation !== 'none' && fileIndex > 0) {
+                console.log(`\n${pc.bold('Restoring server snapshot...')}`);
+                if (isolation === 'file') {
+                    await resetServer();
+                } else {
+                    await restartServer(() => restoreSnapshot(serverDir));
                 }
-                resolve();
-            });
-        });
+            }
+
+            testResults.push(...await runSpecFile(file));
+        }
 
-        serverProcess.removeAllListeners();
-        serverProcess.stdin.end();
-        serverProcess.stdout.destroy();
-        serverProcess.stderr.destroy();
+        if (devMode) {
+            printTestSummary(testResults);
+            await runDevLoop();
+        }
 
-        exitCode = printTestSummary(testResults);
+    } finally {
+        stopMetricsSampling();
+        await botPool?.drain();
+        await disconnectAllBots();
+
+        agent?.close();
+        await stopServer(serverProcess);
+
+        if (workerResultsFile) {
+            // The coordinating runner prints the merged summary
+            await writeWorkerResults(workerResultsFile, testResults);
+            exitCode = testResults.every(r => r.passed) ? 0 : 1;
+        } else {
+            exitCode = printTestSummary(testResults);
+        }
 
         setTimeout(() => {
             process.exit(exitCode);